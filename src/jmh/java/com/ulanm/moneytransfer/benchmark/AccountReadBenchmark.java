@@ -0,0 +1,69 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.dao.TransactionDAO;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.TransactionDTO;
+import com.ulanm.moneytransfer.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Reads of accounts while the same accounts are being transferred between.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountReadBenchmark {
+
+    @Param({"1000"})
+    public int accounts;
+
+    private BenchmarkAccounts pool;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final Random random = new Random();
+
+    }
+
+    @Setup
+    public void setUp() {
+        pool = new BenchmarkAccounts(
+                Application.dao.getUserDAO(), Application.dao.getAccountDAO(), accounts, BenchmarkAccounts.HOT);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteTransactions() {
+        TransactionDAO transactionDAO = Application.dao.getTransactionDAO();
+        for (Transaction transaction : transactionDAO.getAll())
+            transactionDAO.delete(transaction);
+    }
+
+    @Benchmark
+    @Group("readWhileTransferring")
+    @GroupThreads(3)
+    public Account getAccountById(ThreadState state) throws ServiceException {
+        return AccountService.getAccountById(pool.pick(state.random));
+    }
+
+    @Benchmark
+    @Group("readWhileTransferring")
+    @GroupThreads(1)
+    public Transaction transfer(ThreadState state) throws ServiceException {
+        String source = pool.pick(state.random);
+        TransactionDTO data = new TransactionDTO();
+        data.setSourceAccountId(source);
+        data.setDestinationAccountId(pool.pickOther(state.random, source));
+        data.setAmount("1.00");
+        data.setCurrency("USD");
+        return AccountService.transfer(data);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.dao.AccountDAO;
+import com.ulanm.moneytransfer.dao.UserDAO;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.User;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+
+class BenchmarkAccounts {
+
+    static final String UNIFORM = "uniform";
+
+    static final String HOT = "hot";
+
+    private static final double HOT_SHARE = 0.9;
+
+    private static final BigDecimal BALANCE = new BigDecimal("1000000000000.00");
+
+    private final List<String> ids = new ArrayList<>();
+
+    private final int hotAccounts;
+
+    private final boolean hot;
+
+    BenchmarkAccounts(UserDAO userDAO, AccountDAO accountDAO, int count, String skew) {
+        User owner = userDAO.create();
+        owner.setName("benchmark_user");
+        userDAO.submit(owner);
+        for (int i = 0; i < count; i++) {
+            Account account = accountDAO.create();
+            account.setOwner(owner);
+            account.setName("benchmark_account_" + i);
+            account.setCurrency(Currency.getInstance("USD"));
+            account.setBalance(BALANCE);
+            account.setActive(true);
+            accountDAO.submit(account);
+            ids.add(account.getId());
+        }
+        hotAccounts = Math.max(2, count / 100);
+        hot = HOT.equals(skew);
+    }
+
+    // With the hot skew 90% of the picks fall on the first 1% of the accounts.
+    String pick(Random random) {
+        int bound = hot && random.nextDouble() < HOT_SHARE ? hotAccounts : ids.size();
+        return ids.get(random.nextInt(bound));
+    }
+
+    String pickOther(Random random, String id) {
+        String other;
+        do {
+            other = pick(random);
+        } while (other.equals(id));
+        return other;
+    }
+
+}
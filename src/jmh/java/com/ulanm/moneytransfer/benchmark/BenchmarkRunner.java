@@ -0,0 +1,35 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("benchmark.include", ".*");
+        String[] threads = System.getProperty("benchmark.threads", "1,4,16").split(",");
+        String params = System.getProperty("benchmark.params", "");
+        File results = new File(System.getProperty("benchmark.results", "target/jmh"));
+        results.mkdirs();
+        for (String count : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(BenchmarkRunner.class.getPackage().getName() + "." + include)
+                    .threads(Integer.parseInt(count.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "threads-" + count.trim() + ".json").getPath());
+            // "name=value,value;name=value" overrides the @Param values
+            for (String param : params.split(";")) {
+                String[] nameAndValues = param.split("=", 2);
+                if (nameAndValues.length == 2)
+                    options.param(nameAndValues[0].trim(), nameAndValues[1].trim().split(","));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+
+}
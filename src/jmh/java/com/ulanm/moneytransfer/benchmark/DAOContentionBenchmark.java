@@ -0,0 +1,91 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.dao.AccountDAO;
+import com.ulanm.moneytransfer.dao.TransactionDAO;
+import com.ulanm.moneytransfer.dao.UserDAO;
+import com.ulanm.moneytransfer.dao.impl.AccountInMemoryDAO;
+import com.ulanm.moneytransfer.dao.impl.TransactionInMemoryDAO;
+import com.ulanm.moneytransfer.dao.impl.UserInMemoryDAO;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DAOContentionBenchmark {
+
+    private final UserDAO userDAO = new UserInMemoryDAO();
+    private final AccountDAO accountDAO = new AccountInMemoryDAO();
+    private final TransactionDAO transactionDAO = new TransactionInMemoryDAO();
+
+    @Param({"1000"})
+    public int accounts;
+
+    @Param({BenchmarkAccounts.UNIFORM, BenchmarkAccounts.HOT})
+    public String skew;
+
+    private BenchmarkAccounts pool;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final Random random = new Random();
+
+        private Account account;
+
+        @Setup
+        public void setUp(DAOContentionBenchmark benchmark) {
+            User owner = benchmark.userDAO.create();
+            owner.setName("benchmark_user");
+            benchmark.userDAO.submit(owner);
+            account = benchmark.accountDAO.create();
+            account.setOwner(owner);
+            account.setName("benchmark_account");
+            benchmark.accountDAO.submit(account);
+        }
+
+    }
+
+    @Setup
+    public void setUp() {
+        pool = new BenchmarkAccounts(userDAO, accountDAO, accounts, skew);
+    }
+
+    @Benchmark
+    public boolean createDeleteUser() {
+        return userDAO.delete(userDAO.create());
+    }
+
+    @Benchmark
+    public boolean createDeleteAccount() {
+        return accountDAO.delete(accountDAO.create());
+    }
+
+    @Benchmark
+    public boolean createDeleteTransaction() {
+        return transactionDAO.delete(transactionDAO.create());
+    }
+
+    @Benchmark
+    public boolean submitAccount(ThreadState state) {
+        return accountDAO.submit(state.account);
+    }
+
+    @Benchmark
+    public Account getAccountById(ThreadState state) {
+        return accountDAO.getById(pool.pick(state.random));
+    }
+
+    @Benchmark
+    public boolean submitPooledAccount(ThreadState state) {
+        return accountDAO.submit(accountDAO.getById(pool.pick(state.random)));
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.dao.IdGenerator;
+import com.ulanm.moneytransfer.dao.impl.RandomIdGenerator;
+import com.ulanm.moneytransfer.dao.impl.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    private final IdGenerator timeOrdered = new TimeOrderedIdGenerator();
+
+    private final IdGenerator random = new RandomIdGenerator();
+
+    @Benchmark
+    public String timeOrderedId() {
+        return timeOrdered.nextId();
+    }
+
+    @Benchmark
+    public String randomId() {
+        return random.nextId();
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.User;
+import com.ulanm.moneytransfer.serializer.SerializerModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new SerializerModule());
+
+    private final ObjectWriter compactWriter = mapper.writer();
+
+    private final ObjectWriter prettyWriter = mapper.writerWithDefaultPrettyPrinter();
+
+    private Account account;
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        User owner = new User();
+        owner.setName("benchmark_user");
+        account = account(owner, "benchmark_source", "1234567.89");
+        transaction = new Transaction();
+        transaction.setSourceAccount(account);
+        transaction.setDestinationAccount(account(owner, "benchmark_destination", "0.50"));
+        transaction.setCurrency(Currency.getInstance("USD"));
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setComment("benchmark");
+        transaction.setStatus(Transaction.TransactionStatus.EXECUTED);
+        transaction.setExecutionDateTime(LocalDateTime.now());
+    }
+
+    private static Account account(User owner, String name, String balance) {
+        Account account = new Account();
+        account.setOwner(owner);
+        account.setName(name);
+        account.setCurrency(Currency.getInstance("USD"));
+        account.setBalance(new BigDecimal(balance));
+        account.setActive(true);
+        return account;
+    }
+
+    @Benchmark
+    public String compactAccount() throws JsonProcessingException {
+        return compactWriter.writeValueAsString(account);
+    }
+
+    @Benchmark
+    public String compactTransaction() throws JsonProcessingException {
+        return compactWriter.writeValueAsString(transaction);
+    }
+
+    @Benchmark
+    public String prettyTransaction() throws JsonProcessingException {
+        return prettyWriter.writeValueAsString(transaction);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.ulanm.moneytransfer.serializer.BigDecimalSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneySerializationBenchmark {
+
+    private static final int AMOUNTS = 64;
+
+    private final BigDecimal[] amounts = new BigDecimal[AMOUNTS];
+
+    private ObjectWriter legacyWriter;
+
+    private ObjectWriter currentWriter;
+
+    public static class LegacyBigDecimalSerializer extends JsonSerializer<BigDecimal> {
+
+        private static final ThreadLocal<DecimalFormat> df = ThreadLocal.withInitial(() -> new DecimalFormat("#.00"));
+
+        @Override
+        public void serialize(BigDecimal bigDecimal, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+            jsonGenerator.writeString(df.get().format(bigDecimal));
+        }
+
+    }
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        Random random = new Random(42);
+        for (int i = 0; i < AMOUNTS; i++)
+            amounts[i] = BigDecimal.valueOf(random.nextInt(2_000_000) - 1_000_000, 2);
+        legacyWriter = writer(new LegacyBigDecimalSerializer());
+        currentWriter = writer(new BigDecimalSerializer());
+        if (!legacyWriter.writeValueAsString(amounts).equals(currentWriter.writeValueAsString(amounts)))
+            throw new IllegalStateException("Serializers produce different output.");
+    }
+
+    private static ObjectWriter writer(JsonSerializer<BigDecimal> serializer) {
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(BigDecimal.class, serializer);
+        return new ObjectMapper().registerModule(module).writer();
+    }
+
+    @Benchmark
+    public String legacyDecimalFormat() throws JsonProcessingException {
+        return legacyWriter.writeValueAsString(amounts);
+    }
+
+    @Benchmark
+    public String unscaledDigits() throws JsonProcessingException {
+        return currentWriter.writeValueAsString(amounts);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.dao.TransactionDAO;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.TransactionDTO;
+import com.ulanm.moneytransfer.service.AccountService;
+import com.ulanm.moneytransfer.service.SinkAccounts;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Transfers from random accounts into a single destination, which is designated as a sink account
+ * when buffered is true. Run it with several threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SinkTransferBenchmark {
+
+    @Param({"1000"})
+    public int accounts;
+
+    @Param({"false", "true"})
+    public boolean buffered;
+
+    private BenchmarkAccounts pool;
+
+    private String sink;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final Random random = new Random();
+
+    }
+
+    @Setup
+    public void setUp() {
+        pool = new BenchmarkAccounts(
+                Application.dao.getUserDAO(), Application.dao.getAccountDAO(), accounts, BenchmarkAccounts.UNIFORM);
+        sink = pool.pick(new Random(42));
+        SinkAccounts.setAccounts(buffered ? Collections.singletonList(sink) : Collections.emptyList());
+    }
+
+    @TearDown
+    public void clearSinks() {
+        SinkAccounts.setAccounts(Collections.emptyList());
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteTransactions() {
+        TransactionDAO transactionDAO = Application.dao.getTransactionDAO();
+        for (Transaction transaction : transactionDAO.getAll())
+            transactionDAO.delete(transaction);
+    }
+
+    @Benchmark
+    public Transaction transferToSink(ThreadState state) throws ServiceException {
+        TransactionDTO data = new TransactionDTO();
+        data.setSourceAccountId(pool.pickOther(state.random, sink));
+        data.setDestinationAccountId(sink);
+        data.setAmount("1.00");
+        data.setCurrency("USD");
+        data.setComment("benchmark");
+        return AccountService.transfer(data);
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.dao.BundleDAO;
+import com.ulanm.moneytransfer.dao.impl.AccountInMemoryDAO;
+import com.ulanm.moneytransfer.dao.impl.JournalBundleDAO;
+import com.ulanm.moneytransfer.dao.impl.TransactionInMemoryDAO;
+import com.ulanm.moneytransfer.dao.impl.UserInMemoryDAO;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+ * Time to open the journal DAO from a snapshot of the given number of transactions followed by
+ * a journal tail of the given number of transfers. Run it with a single thread.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final Currency CURRENCY = Currency.getInstance("USD");
+
+    @Param({"10000000"})
+    public int transactions;
+
+    @Param({"100000"})
+    public int tail;
+
+    private Path directory;
+
+    private JournalBundleDAO dao;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("startup-benchmark");
+        JournalBundleDAO writer = JournalBundleDAO.open(directory.resolve("journal"), 0);
+        BenchmarkAccounts pool = new BenchmarkAccounts(
+                writer.getUserDAO(), writer.getAccountDAO(), 1000, BenchmarkAccounts.UNIFORM);
+        Random random = new Random(42);
+        TransactionInMemoryDAO transactionDAO = new TransactionInMemoryDAO();
+        LocalDateTime start = LocalDateTime.now().minusYears(1);
+        for (int i = 0; i < transactions; i++) {
+            Transaction transaction = new Transaction(UUID.randomUUID().toString(), start.plusNanos(i * 1000L));
+            fill(transaction, writer, pool, random);
+            transactionDAO.restore(transaction);
+        }
+        writer.snapshot();
+        for (int i = 0; i < tail; i++) {
+            Transaction transaction = writer.getTransactionDAO().create();
+            fill(transaction, writer, pool, random);
+            writer.getTransactionDAO().submit(transaction);
+        }
+        writer.sync();
+        writer.close();
+        clear();
+    }
+
+    private static void fill(Transaction transaction, BundleDAO dao, BenchmarkAccounts pool, Random random) {
+        String source = pool.pick(random);
+        transaction.setSourceAccount(dao.getAccountDAO().getById(source));
+        transaction.setDestinationAccount(dao.getAccountDAO().getById(pool.pickOther(random, source)));
+        transaction.setCurrency(CURRENCY);
+        transaction.setAmountUnits(random.nextInt(100_000) + 1);
+        transaction.setComment("benchmark");
+        transaction.setStatus(Transaction.TransactionStatus.EXECUTED);
+        transaction.setExecutionDateTime(transaction.getCreationDateTime());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeDAO() {
+        dao.close();
+        clear();
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private static void clear() {
+        TransactionInMemoryDAO transactionDAO = new TransactionInMemoryDAO();
+        for (Transaction transaction : transactionDAO.getAll())
+            transactionDAO.delete(transaction);
+        AccountInMemoryDAO accountDAO = new AccountInMemoryDAO();
+        for (Account account : accountDAO.getAll())
+            accountDAO.delete(account);
+        UserInMemoryDAO userDAO = new UserInMemoryDAO();
+        for (User user : userDAO.getAll())
+            userDAO.delete(user);
+    }
+
+    @Benchmark
+    public JournalBundleDAO open() throws IOException {
+        dao = JournalBundleDAO.open(directory.resolve("journal"), 0);
+        return dao;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.dao.TransactionDAO;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.TransactionDTO;
+import com.ulanm.moneytransfer.service.AccountService;
+import com.ulanm.moneytransfer.service.LockingTransferEngine;
+import com.ulanm.moneytransfer.service.ShardedTransferEngine;
+import com.ulanm.moneytransfer.service.TransferEngine;
+import com.ulanm.moneytransfer.service.TransferService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Currency;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+    private static final long AMOUNT_UNITS = 100;
+
+    private static final Currency CURRENCY = Currency.getInstance("USD");
+
+    @Param({"1000"})
+    public int accounts;
+
+    @Param({BenchmarkAccounts.UNIFORM, BenchmarkAccounts.HOT})
+    public String skew;
+
+    @Param({"locking", "sharded"})
+    public String engine;
+
+    private BenchmarkAccounts pool;
+
+    private TransferEngine transferEngine;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final Random random = new Random();
+
+    }
+
+    @Setup
+    public void setUp() {
+        pool = new BenchmarkAccounts(
+                Application.dao.getUserDAO(), Application.dao.getAccountDAO(), accounts, skew);
+        transferEngine = engine.equals("sharded")
+                ? new ShardedTransferEngine(ShardedTransferEngine.DEFAULT_SHARDS)
+                : new LockingTransferEngine();
+        TransferService.setEngine(transferEngine);
+    }
+
+    @TearDown
+    public void closeEngine() {
+        TransferService.setEngine(new LockingTransferEngine());
+        transferEngine.close();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteTransactions() {
+        TransactionDAO transactionDAO = Application.dao.getTransactionDAO();
+        for (Transaction transaction : transactionDAO.getAll())
+            transactionDAO.delete(transaction);
+    }
+
+    @Benchmark
+    public Transaction transferServiceExecute(ThreadState state) throws ServiceException {
+        String source = pool.pick(state.random);
+        String destination = pool.pickOther(state.random, source);
+        Transaction transaction = Application.dao.getTransactionDAO().create();
+        transaction.setSourceAccount(AccountService.getAccountById(source));
+        transaction.setDestinationAccount(AccountService.getAccountById(destination));
+        transaction.setCurrency(CURRENCY);
+        transaction.setAmountUnits(AMOUNT_UNITS);
+        return TransferService.execute(transaction);
+    }
+
+    @Benchmark
+    public Transaction accountServiceTransfer(ThreadState state) throws ServiceException {
+        String source = pool.pick(state.random);
+        TransactionDTO data = new TransactionDTO();
+        data.setSourceAccountId(source);
+        data.setDestinationAccountId(pool.pickOther(state.random, source));
+        data.setAmount("1.00");
+        data.setCurrency("USD");
+        data.setComment("benchmark");
+        return AccountService.transfer(data);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.ulanm.moneytransfer.benchmark;
+
+import com.ulanm.moneytransfer.dao.UserDAO;
+import com.ulanm.moneytransfer.dao.impl.UserInMemoryDAO;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Name search latency for a growing number of users, latency should not grow with them.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {"John", "Jane", "Alice", "Bob", "Maria", "Ivan", "Aigerim", "Ulan"};
+
+    private static final int LIMIT = 20;
+
+    @Param({"10000", "1000000"})
+    public int users;
+
+    private final UserDAO userDAO = new UserInMemoryDAO();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < users; i++) {
+            User user = userDAO.create();
+            user.setName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " Doe" + random.nextInt(users));
+            userDAO.submit(user);
+        }
+    }
+
+    @TearDown
+    public void deleteUsers() {
+        for (User user : userDAO.getAll())
+            userDAO.delete(user);
+    }
+
+    @Benchmark
+    public List<User> findBySubstring() {
+        return userDAO.findByName("doe1234", false, LIMIT);
+    }
+
+    @Benchmark
+    public List<User> findByPrefix() {
+        return userDAO.findByName("ulan doe", true, LIMIT);
+    }
+
+}
@@ -2,18 +2,50 @@ package com.ulanm.moneytransfer;
 
 import com.ulanm.moneytransfer.dao.BundleDAO;
 import com.ulanm.moneytransfer.dao.impl.InMemoryBundleDAO;
-import com.ulanm.moneytransfer.conrtoller.Controller;
-import com.ulanm.moneytransfer.conrtoller.impl.MainController;
+import com.ulanm.moneytransfer.dao.IdGenerator;
+import com.ulanm.moneytransfer.dao.impl.JournalBundleDAO;
+import com.ulanm.moneytransfer.dao.impl.RandomIdGenerator;
+import com.ulanm.moneytransfer.dao.impl.TimeOrderedIdGenerator;
+import com.ulanm.moneytransfer.conrtoller.ServiceExecutor;
+import com.ulanm.moneytransfer.conrtoller.TransactionStream;
+import com.ulanm.moneytransfer.service.AccountLocks;
+import com.ulanm.moneytransfer.service.IdempotencyKeys;
+import com.ulanm.moneytransfer.service.LockingTransferEngine;
+import com.ulanm.moneytransfer.service.ShardedTransferEngine;
+import com.ulanm.moneytransfer.service.SinkAccounts;
+import com.ulanm.moneytransfer.service.TransactionFeed;
+import com.ulanm.moneytransfer.service.TransferEngine;
+import com.ulanm.moneytransfer.service.TransferPipeline;
+import com.ulanm.moneytransfer.service.TransferService;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Launcher;
-import io.vertx.ext.web.Router;
+import io.vertx.core.json.JsonArray;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 
 public class Application extends AbstractVerticle {
 
     public static final int PORT_NUMBER = 8080;
 
-    public static final BundleDAO dao = new InMemoryBundleDAO();
+    public static final int DEFAULT_HTTP_INSTANCES = Runtime.getRuntime().availableProcessors();
+
+    public static final String DEFAULT_DAO = "memory";
+
+    public static final String DEFAULT_JOURNAL_PATH = "moneytransfer.journal";
+
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 600;
+
+    public static final String DEFAULT_ID_GENERATOR = "time";
+
+    public static final String DEFAULT_TRANSFER_ENGINE = "locking";
+
+    public static volatile BundleDAO dao = new InMemoryBundleDAO();
+
+    private TransferEngine engine;
 
     public static void main(String[] args) {
         Launcher.executeCommand("run", Application.class.getName());
@@ -21,21 +53,121 @@ public class Application extends AbstractVerticle {
 
     @Override
     public void start(Future<Void> future) {
+        try {
+            InMemoryBundleDAO.setIdGenerator(createIdGenerator());
+        }
+        catch (IllegalArgumentException e) {
+            future.fail(e);
+            return;
+        }
+        vertx.<BundleDAO>executeBlocking(
+                daoFuture -> daoFuture.complete(openDAO()),
+                result -> {
+                    if (result.failed()) {
+                        future.fail(result.cause());
+                        return;
+                    }
+                    dao = result.result();
+                    deploy(future);
+                }
+        );
+    }
+
+    @Override
+    public void stop() {
+        TransferPipeline.close();
+        if (engine != null)
+            engine.close();
+        dao.close();
+    }
+
+    private BundleDAO openDAO() {
+        String type = config().getString("dao", DEFAULT_DAO);
+        switch (type) {
+            case "memory":
+                return dao;
+            case "journal":
+                try {
+                    return JournalBundleDAO.open(
+                            Paths.get(config().getString("journal.path", DEFAULT_JOURNAL_PATH)),
+                            config().getLong("snapshot.interval", DEFAULT_SNAPSHOT_INTERVAL)
+                    );
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown DAO type: " + type);
+        }
+    }
+
+    private IdGenerator createIdGenerator() {
+        String type = config().getString("id.generator", DEFAULT_ID_GENERATOR);
+        switch (type) {
+            case "time":
+                return new TimeOrderedIdGenerator();
+            case "random":
+                return new RandomIdGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown ID generator: " + type);
+        }
+    }
+
+    private TransferEngine createEngine() {
+        String type = config().getString("transfer.engine", DEFAULT_TRANSFER_ENGINE);
+        switch (type) {
+            case "locking":
+                return new LockingTransferEngine();
+            case "sharded":
+                return new ShardedTransferEngine(
+                        config().getInteger("transfer.shards", ShardedTransferEngine.DEFAULT_SHARDS));
+            default:
+                throw new IllegalArgumentException("Unknown transfer engine: " + type);
+        }
+    }
+
+    private void deploy(Future<Void> future) {
+
+        AccountLocks.setTimeout(config().getLong("lock.timeout", AccountLocks.DEFAULT_TIMEOUT_MILLIS));
+        IdempotencyKeys.configure(
+                config().getInteger("idempotency.size", IdempotencyKeys.DEFAULT_MAX_SIZE),
+                config().getLong("idempotency.ttl", IdempotencyKeys.DEFAULT_TTL_SECONDS)
+        );
+        TransferPipeline.configure(
+                config().getInteger("transfer.pool.size", TransferPipeline.DEFAULT_POOL_SIZE),
+                config().getInteger("transfer.queue.size", TransferPipeline.DEFAULT_QUEUE_SIZE)
+        );
+        TransactionFeed.configure(config().getInteger("feed.history.size", TransactionFeed.DEFAULT_HISTORY_SIZE));
+        TransactionStream.install(vertx);
+        SinkAccounts.setAccounts(config().getJsonArray("sink.accounts", new JsonArray()).getList());
+        try {
+            engine = createEngine();
+        }
+        catch (IllegalArgumentException e) {
+            future.fail(e);
+            return;
+        }
+        TransferService.setEngine(engine);
+
+        ServiceExecutor executor = new ServiceExecutor(
+                vertx,
+                config().getInteger("service.pool.size", ServiceExecutor.DEFAULT_POOL_SIZE),
+                config().getInteger("service.queue.size", ServiceExecutor.DEFAULT_QUEUE_SIZE)
+        );
+        DeploymentOptions options = new DeploymentOptions()
+                .setInstances(config().getInteger("http.instances", DEFAULT_HTTP_INSTANCES))
+                .setConfig(config());
 
-        Controller controller = new MainController(vertx);
-        Router router = controller.initAndGetRouter();
-
-        vertx.createHttpServer()
-                .requestHandler(router::accept)
-                .listen(
-                        PORT_NUMBER,
-                        result -> {
-                            if (result.succeeded())
-                                future.complete();
-                            else
-                                future.fail(result.cause());
-                        }
-                );
+        vertx.deployVerticle(
+                () -> new HttpServerVerticle(executor),
+                options,
+                result -> {
+                    if (result.succeeded())
+                        future.complete();
+                    else
+                        future.fail(result.cause());
+                }
+        );
 
     }
 
@@ -0,0 +1,38 @@
+package com.ulanm.moneytransfer;
+
+import com.ulanm.moneytransfer.conrtoller.Controller;
+import com.ulanm.moneytransfer.conrtoller.ServiceExecutor;
+import com.ulanm.moneytransfer.conrtoller.impl.MainController;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.ext.web.Router;
+
+public class HttpServerVerticle extends AbstractVerticle {
+
+    private final ServiceExecutor executor;
+
+    public HttpServerVerticle(ServiceExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void start(Future<Void> future) {
+
+        Controller controller = new MainController(vertx, executor);
+        Router router = controller.initAndGetRouter();
+
+        vertx.createHttpServer()
+                .requestHandler(router::accept)
+                .listen(
+                        Application.PORT_NUMBER,
+                        result -> {
+                            if (result.succeeded())
+                                future.complete();
+                            else
+                                future.fail(result.cause());
+                        }
+                );
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.ulanm.moneytransfer.conrtoller;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServiceExecutor {
+
+    public static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final String POOL_NAME = "service-pool";
+
+    private final WorkerExecutor workerExecutor;
+
+    private final int maxPending;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public ServiceExecutor(Vertx vertx, int poolSize, int queueSize) {
+        this.workerExecutor = vertx.createSharedWorkerExecutor(POOL_NAME, poolSize);
+        this.maxPending = poolSize + queueSize;
+    }
+
+    public <T> void execute(RoutingContext context, ServiceCall<T> call, Handler<T> handler) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            fail(context.response(), new ServiceException()
+                    .withStatusCode(503)
+                    .withStatusMessage("Server is busy, please try again later."));
+            return;
+        }
+        workerExecutor.<T>executeBlocking(
+                future -> {
+                    T result = null;
+                    ServiceException failure = null;
+                    try {
+                        result = call.call();
+                    }
+                    catch (ServiceException e) {
+                        failure = e;
+                    }
+                    finally {
+                        // a failed call may have stored changes too, e.g. the created transaction
+                        Application.dao.sync();
+                    }
+                    if (failure != null)
+                        future.fail(failure);
+                    else
+                        future.complete(result);
+                },
+                false,
+                result -> {
+                    pending.decrementAndGet();
+                    if (result.succeeded())
+                        handler.handle(result.result());
+                    else if (result.cause() instanceof ServiceException)
+                        fail(context.response(), (ServiceException) result.cause());
+                    else
+                        fail(context.response(), new ServiceException());
+                }
+        );
+    }
+
+    private static void fail(HttpServerResponse response, ServiceException e) {
+        if (response.closed())
+            return;
+        if (response.headWritten()) {
+            response.close();
+            return;
+        }
+        response.setStatusCode(e.getStatusCode())
+                .setStatusMessage(e.getStatusMessage())
+                .end();
+    }
+
+    public interface ServiceCall<T> {
+
+        T call() throws ServiceException;
+
+    }
+
+}
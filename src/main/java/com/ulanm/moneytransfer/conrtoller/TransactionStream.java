@@ -0,0 +1,67 @@
+package com.ulanm.moneytransfer.conrtoller;
+
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.service.TransactionFeed;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+
+/*
+ * Fans the transaction feed out over the event bus, each transaction is published to the address of all
+ * transactions and to the address of each of its accounts. Publishing only queues the event for the
+ * subscribers, so a slow subscriber never holds up a transfer.
+ */
+public class TransactionStream {
+
+    private static final String ADDRESS = "transactions";
+
+    public static void install(Vertx vertx) {
+        EventBus eventBus = vertx.eventBus();
+        eventBus.registerDefaultCodec(TransactionFeed.Event.class, new LocalCodec());
+        TransactionFeed.setListener(event -> {
+            Transaction transaction = event.getTransaction();
+            eventBus.publish(ADDRESS, event);
+            for (Account account : new Account[] {transaction.getSourceAccount(), transaction.getDestinationAccount()}) {
+                if (!account.getId().equals(Account.EXTERNAL.getId()))
+                    eventBus.publish(address(account.getId()), event);
+            }
+        });
+    }
+
+    public static String address(String accountId) {
+        return accountId == null ? ADDRESS : ADDRESS + "." + accountId;
+    }
+
+    // Events are immutable and never leave the process, so they are passed as they are.
+    private static final class LocalCodec implements MessageCodec<TransactionFeed.Event, TransactionFeed.Event> {
+
+        @Override
+        public void encodeToWire(Buffer buffer, TransactionFeed.Event event) {
+            throw new UnsupportedOperationException("Transaction events are not sent over the wire.");
+        }
+
+        @Override
+        public TransactionFeed.Event decodeFromWire(int position, Buffer buffer) {
+            throw new UnsupportedOperationException("Transaction events are not sent over the wire.");
+        }
+
+        @Override
+        public TransactionFeed.Event transform(TransactionFeed.Event event) {
+            return event;
+        }
+
+        @Override
+        public String name() {
+            return "transaction-feed-event";
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.ulanm.moneytransfer.conrtoller.impl;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import io.vertx.core.http.HttpServerResponse;
+
+// Transaction accepted for execution later, encoded along with the location its status can be polled at.
+class AcceptedTransaction {
+
+    private final String content;
+
+    private final String location;
+
+    AcceptedTransaction(ObjectWriter writer, Transaction transaction) {
+        this.content = MainController.encode(writer, transaction);
+        this.location = "/transaction/info/" + transaction.getId();
+    }
+
+    void end(HttpServerResponse response) {
+        response.setStatusCode(202)
+                .putHeader("content-type", "application/json; charset=utf-8")
+                .putHeader("Location", location)
+                .end(content);
+    }
+
+}
@@ -1,8 +1,10 @@
 package com.ulanm.moneytransfer.conrtoller.impl;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.ulanm.moneytransfer.conrtoller.Controller;
-import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.conrtoller.ServiceExecutor;
 import com.ulanm.moneytransfer.model.impl.*;
+import com.ulanm.moneytransfer.service.AccountLocks;
 import com.ulanm.moneytransfer.service.AccountService;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.DecodeException;
@@ -10,14 +12,18 @@ import io.vertx.core.json.Json;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
+import java.util.Arrays;
 import java.util.List;
 
 public class AccountController implements Controller {
 
     private Vertx vertx;
 
-    public AccountController(Vertx vertx) {
+    private ServiceExecutor executor;
+
+    public AccountController(Vertx vertx, ServiceExecutor executor) {
         this.vertx = vertx;
+        this.executor = executor;
     }
 
     @Override
@@ -29,6 +35,9 @@ public class AccountController implements Controller {
         router.get("/info/:id").handler(this::getAccount);
         router.get("/transactions").handler(this::getTransactions);
         router.get("/transactions/:id").handler(this::getTransactions);
+        router.get("/events").handler(this::streamTransactions);
+        router.get("/events/:id").handler(this::streamTransactions);
+        router.get("/locks").handler(this::getLockMetrics);
         router.put("/edit").handler(this::updateAccount);
         router.put("/edit/:id").handler(this::updateAccount);
         router.put("/activate").handler(this::activate);
@@ -40,198 +49,226 @@ public class AccountController implements Controller {
         router.post("/deposit").handler(this::deposit);
         router.post("/withdraw").handler(this::withdraw);
         router.post("/transfer").handler(this::transfer);
+        router.post("/transfer/batch").handler(this::transferBatch);
 
         return router;
     }
 
+    private void getLockMetrics(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, AccountLocks.getMetrics()),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
+    }
+
     private void getAccount(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
-        try {
-            Account account = AccountService.getAccountById(id);
-            final String content;
-            synchronized (account) {
-                content = Json.encodePrettily(account);
-            }
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(content);
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> new EncodedAccount(writer, AccountService.getAccountById(id)),
+                account -> account.end(context.response())
+        );
     }
 
     private void updateAccount(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
         final AccountDTO accountDTO;
+        final Long expectedVersion;
         try {
             accountDTO = Json.decodeValue(context.getBodyAsString(), AccountDTO.class);
-            Account account = AccountService.updateAccount(id, accountDTO);
-            final String content;
-            synchronized (account) {
-                content = Json.encodePrettily(account);
-            }
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(content);
+            expectedVersion = EncodedAccount.expectedVersion(context.request().getHeader("If-Match"));
         }
         catch (DecodeException e) {
             context.response()
                     .setStatusCode(400)
                     .setStatusMessage("Wrong JSON format.")
                     .end();
+            return;
         }
-        catch (ServiceException e) {
+        catch (IllegalArgumentException e) {
             context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
+                    .setStatusCode(400)
+                    .setStatusMessage(e.getMessage())
                     .end();
+            return;
         }
+        executor.execute(
+                context,
+                () -> new EncodedAccount(writer, AccountService.updateAccount(id, accountDTO, expectedVersion)),
+                account -> account.end(context.response())
+        );
     }
 
     private void deleteAccount(RoutingContext context) {
         final String id = context.request().getParam("id");
-        try {
-            AccountService.deleteAccount(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end();
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> {
+                    AccountService.deleteAccount(id);
+                    return null;
+                },
+                nothing -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end()
+        );
     }
 
     private void deposit(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
+        final String idempotencyKey = context.request().getHeader("Idempotency-Key");
         final DepositWithdrawDTO data;
         try {
             data = Json.decodeValue(context.getBodyAsString(), DepositWithdrawDTO.class);
-            Transaction transaction = AccountService.deposit(data);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(transaction));
         }
         catch (DecodeException e) {
             context.response()
                     .setStatusCode(400)
                     .setStatusMessage("Wrong JSON format.")
                     .end();
+            return;
         }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, AccountService.deposit(data, idempotencyKey)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
     private void withdraw(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
+        final String idempotencyKey = context.request().getHeader("Idempotency-Key");
         final DepositWithdrawDTO data;
         try {
             data = Json.decodeValue(context.getBodyAsString(), DepositWithdrawDTO.class);
-            Transaction transaction = AccountService.withdraw(data);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(transaction));
         }
         catch (DecodeException e) {
             context.response()
                     .setStatusCode(400)
                     .setStatusMessage("Wrong JSON format.")
                     .end();
+            return;
         }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, AccountService.withdraw(data, idempotencyKey)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
     private void getTransactions(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
-        try {
-            List<Transaction> transactions = AccountService.getTransactions(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(transactions));
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        final String from = context.request().getParam("from");
+        final String to = context.request().getParam("to");
+        final String cursor = context.request().getParam("cursor");
+        final String limit = context.request().getParam("limit");
+        executor.execute(
+                context,
+                () -> new EncodedPage(writer, AccountService.getTransactions(id, from, to, cursor, limit)),
+                page -> page.end(context.response())
+        );
+    }
+
+    private void streamTransactions(RoutingContext context) {
+        final String id = context.request().getParam("id");
+        final String lastId = context.request().getHeader("Last-Event-ID");
+        final TransactionSubscription subscription = new TransactionSubscription(vertx, context.response(),
+                MainController.writer(context), id);
+        executor.execute(
+                context,
+                () -> AccountService.getTransactionEvents(id, lastId),
+                subscription::start
+        );
     }
 
     private void transfer(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
+        final String idempotencyKey = context.request().getHeader("Idempotency-Key");
         final TransactionDTO data;
         try {
             data = Json.decodeValue(context.getBodyAsString(), TransactionDTO.class);
-            Transaction transaction = AccountService.transfer(data);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(transaction));
         }
         catch (DecodeException e) {
             context.response()
                     .setStatusCode(400)
                     .setStatusMessage("Wrong JSON format.")
                     .end();
+            return;
         }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
+        if ("true".equalsIgnoreCase(context.request().getParam("async"))) {
+            executor.execute(
+                    context,
+                    () -> new AcceptedTransaction(writer, AccountService.transferAsync(data, idempotencyKey)),
+                    transaction -> transaction.end(context.response())
+            );
+            return;
         }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, AccountService.transfer(data, idempotencyKey)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
-    private void activate(RoutingContext context) {
-        final String id = context.request().getParam("id");
+    private void transferBatch(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
+        final boolean atomic = "true".equalsIgnoreCase(context.request().getParam("atomic"));
+        final List<TransactionDTO> data;
         try {
-            Account account = AccountService.activateAccount(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(account));
+            data = Arrays.asList(Json.decodeValue(context.getBodyAsString(), TransactionDTO[].class));
         }
-        catch (ServiceException e) {
+        catch (DecodeException e) {
             context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
+                    .setStatusCode(400)
+                    .setStatusMessage("Wrong JSON format.")
                     .end();
+            return;
         }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, AccountService.transferBatch(data, atomic)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
+    }
+
+    private void activate(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
+        final String id = context.request().getParam("id");
+        executor.execute(
+                context,
+                () -> new EncodedAccount(writer, AccountService.activateAccount(id)),
+                account -> account.end(context.response())
+        );
     }
 
     private void deactivate(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
-        try {
-            Account account = AccountService.deactivateAccount(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(account));
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> new EncodedAccount(writer, AccountService.deactivateAccount(id)),
+                account -> account.end(context.response())
+        );
     }
 
 }
@@ -0,0 +1,44 @@
+package com.ulanm.moneytransfer.conrtoller.impl;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ulanm.moneytransfer.model.impl.Account;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Account encoded along with its version as the entity tag, which an update can be made conditional on.
+class EncodedAccount {
+
+    private static final Pattern ENTITY_TAG = Pattern.compile("\\s*\"(\\d{1,18})\"\\s*");
+
+    private final String content;
+
+    private final String entityTag;
+
+    EncodedAccount(ObjectWriter writer, Account account) {
+        this.content = MainController.encode(writer, account);
+        this.entityTag = "\"" + account.getVersion() + "\"";
+    }
+
+    /*
+     * Version an If-Match header requires, null when there is no header or it matches any version.
+     * Only a single strong entity tag is supported.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*"))
+            return null;
+        Matcher matcher = ENTITY_TAG.matcher(ifMatch);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Wrong If-Match format.");
+        return Long.parseLong(matcher.group(1));
+    }
+
+    void end(HttpServerResponse response) {
+        response.setStatusCode(200)
+                .putHeader("content-type", "application/json; charset=utf-8")
+                .putHeader("ETag", entityTag)
+                .end(content);
+    }
+
+}
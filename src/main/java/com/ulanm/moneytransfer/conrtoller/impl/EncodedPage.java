@@ -0,0 +1,45 @@
+package com.ulanm.moneytransfer.conrtoller.impl;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ulanm.moneytransfer.model.impl.Page;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+
+class EncodedPage {
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final Buffer content;
+
+    private final String nextCursor;
+
+    EncodedPage(ObjectWriter writer, Page<?> page) {
+        this(Buffer.buffer(MainController.encode(writer, page.getItems())), page.getNextCursor());
+    }
+
+    EncodedPage(Buffer content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    Buffer getContent() {
+        return content;
+    }
+
+    String getNextCursor() {
+        return nextCursor;
+    }
+
+    boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    void end(HttpServerResponse response) {
+        response.setStatusCode(200)
+                .putHeader("content-type", "application/json; charset=utf-8");
+        if (hasNext())
+            response.putHeader(NEXT_CURSOR_HEADER, nextCursor);
+        response.end(content);
+    }
+
+}
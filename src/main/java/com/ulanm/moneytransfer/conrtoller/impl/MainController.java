@@ -1,41 +1,61 @@
 package com.ulanm.moneytransfer.conrtoller.impl;
 
-import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.ulanm.moneytransfer.Application;
 import com.ulanm.moneytransfer.conrtoller.Controller;
-import com.ulanm.moneytransfer.serializer.BigDecimalSerializer;
-import com.ulanm.moneytransfer.serializer.CurrencySerializer;
-import com.ulanm.moneytransfer.serializer.DateTimeSerializer;
+import com.ulanm.moneytransfer.conrtoller.ServiceExecutor;
+import com.ulanm.moneytransfer.serializer.SerializerModule;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.EncodeException;
 import io.vertx.core.json.Json;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.StaticHandler;
 
-import java.math.BigDecimal;
-import java.time.*;
-import java.util.Currency;
-
 public class MainController implements Controller {
 
+    static {
+        SerializerModule module = new SerializerModule();
+        Json.mapper.registerModule(module);
+        Json.prettyMapper.registerModule(module);
+    }
+
+    private static final ObjectWriter COMPACT_WRITER = Json.mapper.writer();
+
+    private static final ObjectWriter PRETTY_WRITER = Json.mapper.writerWithDefaultPrettyPrinter();
+
+    static ObjectWriter writer(RoutingContext context) {
+        if ("true".equalsIgnoreCase(context.request().getParam("pretty")))
+            return PRETTY_WRITER;
+        String accept = context.request().getHeader("Accept");
+        if (accept != null) {
+            for (String parameter : accept.split("[,;]")) {
+                if (parameter.replace(" ", "").equalsIgnoreCase("pretty=true"))
+                    return PRETTY_WRITER;
+            }
+        }
+        return COMPACT_WRITER;
+    }
+
+    static String encode(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsString(value);
+        }
+        catch (JsonProcessingException e) {
+            throw new EncodeException("Failed to encode as JSON: " + e.getMessage());
+        }
+    }
+
     private Vertx vertx;
 
-    public MainController(Vertx vertx) {
-        this.vertx = vertx;
+    private ServiceExecutor executor;
 
-        SimpleModule module = new SimpleModule();
-        module.addSerializer(LocalDateTime.class, new DateTimeSerializer());
-        module.addSerializer(LocalDate.class, new DateTimeSerializer());
-        module.addSerializer(LocalTime.class, new DateTimeSerializer());
-        module.addSerializer(OffsetDateTime.class, new DateTimeSerializer());
-        module.addSerializer(OffsetTime.class, new DateTimeSerializer());
-        module.addSerializer(ZonedDateTime.class, new DateTimeSerializer());
-        module.addSerializer(Currency.class, new CurrencySerializer());
-        module.addSerializer(BigDecimal.class, new BigDecimalSerializer());
-        Json.mapper.registerModule(module);
-        Json.prettyMapper.registerModule(module);
+    public MainController(Vertx vertx, ServiceExecutor executor) {
+        this.vertx = vertx;
+        this.executor = executor;
     }
 
     @Override
@@ -51,13 +71,13 @@ public class MainController implements Controller {
                     .end("<h1>Money Transfer App</h1>");
         });
 
-        Controller accountController = new AccountController(vertx);
+        Controller accountController = new AccountController(vertx, executor);
         router.mountSubRouter("/account", accountController.initAndGetRouter());
 
-        Controller transactionController = new TransactionController(vertx);
+        Controller transactionController = new TransactionController(vertx, executor);
         router.mountSubRouter("/transaction", transactionController.initAndGetRouter());
 
-        Controller userController = new UserController(vertx);
+        Controller userController = new UserController(vertx, executor);
         router.mountSubRouter("/user", userController.initAndGetRouter());
 
         router.post("/test").handler(this::test);
@@ -66,10 +86,16 @@ public class MainController implements Controller {
     }
 
     private void test(RoutingContext context) {
-        Application.dao.generateTestData();
-        context.response()
-                .setStatusCode(201)
-                .end();
+        executor.execute(
+                context,
+                () -> {
+                    Application.dao.generateTestData();
+                    return null;
+                },
+                nothing -> context.response()
+                        .setStatusCode(201)
+                        .end()
+        );
     }
 
 }
@@ -1,11 +1,10 @@
 package com.ulanm.moneytransfer.conrtoller.impl;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.ulanm.moneytransfer.conrtoller.Controller;
-import com.ulanm.moneytransfer.exception.ServiceException;
-import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.conrtoller.ServiceExecutor;
 import com.ulanm.moneytransfer.service.TransferService;
 import io.vertx.core.Vertx;
-import io.vertx.core.json.Json;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
@@ -13,8 +12,11 @@ public class TransactionController implements Controller {
 
     private Vertx vertx;
 
-    public TransactionController(Vertx vertx) {
+    private ServiceExecutor executor;
+
+    public TransactionController(Vertx vertx, ServiceExecutor executor) {
         this.vertx = vertx;
+        this.executor = executor;
     }
 
     @Override
@@ -26,20 +28,16 @@ public class TransactionController implements Controller {
     }
 
     private void getTransaction(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
-        try {
-            Transaction transaction = TransferService.getTransactionById(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(transaction));
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, TransferService.getTransactionById(id)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
 }
@@ -0,0 +1,107 @@
+package com.ulanm.moneytransfer.conrtoller.impl;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ulanm.moneytransfer.conrtoller.TransactionStream;
+import com.ulanm.moneytransfer.service.TransactionFeed;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/*
+ * Writes the transaction feed to a response as server-sent events. Events published while the missed
+ * ones are looked up are held back until those are written. A subscriber which does not read fast
+ * enough is disconnected, it can resume with the ID of the last event it received.
+ */
+class TransactionSubscription {
+
+    private static final long KEEP_ALIVE_MILLIS = 15_000;
+
+    private static final int MAX_HELD_EVENTS = 10_000;
+
+    private static final Pattern LINE_BREAK = Pattern.compile("\r?\n");
+
+    private final Vertx vertx;
+
+    private final HttpServerResponse response;
+
+    private final ObjectWriter writer;
+
+    private final MessageConsumer<TransactionFeed.Event> consumer;
+
+    private List<TransactionFeed.Event> held = new ArrayList<>();
+
+    private long lastSequence;
+
+    private long timer = -1;
+
+    private boolean closed;
+
+    TransactionSubscription(Vertx vertx, HttpServerResponse response, ObjectWriter writer, String accountId) {
+        this.vertx = vertx;
+        this.response = response;
+        this.writer = writer;
+        this.consumer = vertx.eventBus().consumer(TransactionStream.address(accountId), message -> {
+            if (closed)
+                return;
+            if (held == null)
+                write(message.body());
+            else if (held.size() < MAX_HELD_EVENTS)
+                held.add(message.body());
+            else
+                response.end();
+        });
+        response.closeHandler(v -> close());
+        response.endHandler(v -> close());
+    }
+
+    void start(List<TransactionFeed.Event> missed) {
+        if (closed)
+            return;
+        response.setStatusCode(200)
+                .setChunked(true)
+                .putHeader("content-type", "text/event-stream; charset=utf-8")
+                .putHeader("Cache-Control", "no-cache")
+                .write(":\n\n");
+        for (TransactionFeed.Event event : missed)
+            write(event);
+        for (TransactionFeed.Event event : held)
+            write(event);
+        held = null;
+        if (!closed)
+            timer = vertx.setPeriodic(KEEP_ALIVE_MILLIS, id -> send(":\n\n"));
+    }
+
+    private void write(TransactionFeed.Event event) {
+        // an event is held back and also replayed when it was published during the lookup
+        if (closed || event.getSequence() <= lastSequence)
+            return;
+        lastSequence = event.getSequence();
+        // every line of pretty printed JSON is a data line of its own
+        String data = LINE_BREAK.matcher(MainController.encode(writer, event.getTransaction())).replaceAll("\ndata: ");
+        send("id: " + event.getTransaction().getId() + "\n" +
+                "event: transaction\n" +
+                "data: " + data + "\n\n");
+    }
+
+    private void send(String content) {
+        if (closed)
+            return;
+        response.write(content);
+        if (response.writeQueueFull())
+            response.end();
+    }
+
+    private void close() {
+        if (closed)
+            return;
+        closed = true;
+        consumer.unregister();
+        if (timer != -1)
+            vertx.cancelTimer(timer);
+    }
+
+}
@@ -1,26 +1,32 @@
 package com.ulanm.moneytransfer.conrtoller.impl;
 
-import com.ulanm.moneytransfer.exception.ServiceException;
-import com.ulanm.moneytransfer.model.impl.Account;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ulanm.moneytransfer.conrtoller.ServiceExecutor;
 import com.ulanm.moneytransfer.model.impl.AccountDTO;
+import com.ulanm.moneytransfer.model.impl.Page;
 import com.ulanm.moneytransfer.model.impl.User;
 import com.ulanm.moneytransfer.model.impl.UserDTO;
 import com.ulanm.moneytransfer.conrtoller.Controller;
 import com.ulanm.moneytransfer.service.UserService;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
-import java.util.List;
-
 public class UserController implements Controller {
 
+    private static final int STREAM_PAGE_SIZE = 100;
+
     private Vertx vertx;
 
-    public UserController(Vertx vertx) {
+    private ServiceExecutor executor;
+
+    public UserController(Vertx vertx, ServiceExecutor executor) {
         this.vertx = vertx;
+        this.executor = executor;
     }
 
     @Override
@@ -47,160 +53,188 @@ public class UserController implements Controller {
     }
 
     private void createUser(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final UserDTO userDTO;
         try {
             userDTO = Json.decodeValue(context.getBodyAsString(), UserDTO.class);
-            User user = UserService.createUser(userDTO);
-            context.response()
-                    .setStatusCode(201)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(user));
         }
         catch (DecodeException e) {
             context.response()
                     .setStatusCode(400)
                     .setStatusMessage("Wrong JSON format.")
                     .end();
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+            return;
+        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, UserService.createUser(userDTO)),
+                content -> context.response()
+                        .setStatusCode(201)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
     private void getAllUsers(RoutingContext context) {
-        try {
-            List<User> users = UserService.getAllUsers();
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(users));
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        final ObjectWriter writer = MainController.writer(context);
+        final String limit = context.request().getParam("limit");
+        final String cursor = context.request().getParam("cursor");
+        if (limit == null && cursor == null) {
+            streamAllUsers(context);
+            return;
+        }
+        executor.execute(
+                context,
+                () -> new EncodedPage(writer, UserService.getUsers(cursor, limit)),
+                page -> page.end(context.response())
+        );
+    }
+
+    private void streamAllUsers(RoutingContext context) {
+        streamUsers(context, null, true);
+    }
+
+    private void streamUsers(RoutingContext context, String cursor, boolean first) {
+        final ObjectWriter writer = MainController.writer(context);
+        executor.execute(
+                context,
+                () -> {
+                    Page<User> page = UserService.getUsers(cursor, STREAM_PAGE_SIZE);
+                    Buffer chunk = Buffer.buffer(first ? "[" : "");
+                    for (int i = 0; i < page.getItems().size(); i++) {
+                        if (!first || i > 0)
+                            chunk.appendString(",");
+                        chunk.appendString(MainController.encode(writer, page.getItems().get(i)));
+                    }
+                    if (!page.hasNext())
+                        chunk.appendString("]");
+                    return new EncodedPage(chunk, page.getNextCursor());
+                },
+                chunk -> {
+                    HttpServerResponse response = context.response();
+                    if (response.closed())
+                        return;
+                    if (!response.headWritten())
+                        response.setStatusCode(200)
+                                .setChunked(true)
+                                .putHeader("content-type", "application/json; charset=utf-8");
+                    if (!chunk.hasNext()) {
+                        response.end(chunk.getContent());
+                        return;
+                    }
+                    response.write(chunk.getContent());
+                    if (response.writeQueueFull())
+                        response.drainHandler(v -> {
+                            response.drainHandler(null);
+                            streamUsers(context, chunk.getNextCursor(), false);
+                        });
+                    else
+                        streamUsers(context, chunk.getNextCursor(), false);
+                }
+        );
     }
 
     private void getUser(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
-        try {
-            User user = UserService.getUserById(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(user));
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, UserService.getUserById(id)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
     private void updateUser(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
         final UserDTO userDTO;
         try {
             userDTO = Json.decodeValue(context.getBodyAsString(), UserDTO.class);
-            User user = UserService.updateUser(id, userDTO);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(user));
         }
         catch (DecodeException e) {
             context.response()
                     .setStatusCode(400)
                     .setStatusMessage("Wrong JSON format.")
                     .end();
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+            return;
+        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, UserService.updateUser(id, userDTO)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
     private void deleteUser(RoutingContext context) {
         final String id = context.request().getParam("id");
-        try {
-            UserService.deleteUser(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end();
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> {
+                    UserService.deleteUser(id);
+                    return null;
+                },
+                nothing -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end()
+        );
     }
 
     private void getAccounts(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String id = context.request().getParam("id");
-        try {
-            List<Account> accounts = UserService.getAccounts(id);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(accounts));
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, UserService.getAccounts(id)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
     private void createAccount(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final AccountDTO accountDTO;
         try {
             accountDTO = Json.decodeValue(context.getBodyAsString(), AccountDTO.class);
-            Account account = UserService.createAccount(accountDTO);
-            context.response()
-                    .setStatusCode(201)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(account));
         }
         catch (DecodeException e) {
             context.response()
                     .setStatusCode(400)
                     .setStatusMessage("Wrong JSON format.")
                     .end();
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+            return;
+        }
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, UserService.createAccount(accountDTO)),
+                content -> context.response()
+                        .setStatusCode(201)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
     private void findUser(RoutingContext context) {
+        final ObjectWriter writer = MainController.writer(context);
         final String name = context.request().getParam("name");
-        try {
-            List<User> users = UserService.findUsersByName(name);
-            context.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(users));
-        }
-        catch (ServiceException e) {
-            context.response()
-                    .setStatusCode(e.getStatusCode())
-                    .setStatusMessage(e.getStatusMessage())
-                    .end();
-        }
+        final String match = context.request().getParam("match");
+        final String limit = context.request().getParam("limit");
+        executor.execute(
+                context,
+                () -> MainController.encode(writer, UserService.findUsersByName(name, match, limit)),
+                content -> context.response()
+                        .setStatusCode(200)
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(content)
+        );
     }
 
 }
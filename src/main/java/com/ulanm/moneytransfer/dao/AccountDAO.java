@@ -2,4 +2,13 @@ package com.ulanm.moneytransfer.dao;
 
 import com.ulanm.moneytransfer.model.impl.Account;
 
-public interface AccountDAO extends GenericDAO<Account> {}
+import java.util.List;
+
+public interface AccountDAO extends GenericDAO<Account> {
+
+    List<Account> getByOwnerId(String ownerId);
+
+    // Stores the account only if the stored one is still of the expected version, returns what was stored or null.
+    Account compareAndSubmit(Account entity, long expectedVersion);
+
+}
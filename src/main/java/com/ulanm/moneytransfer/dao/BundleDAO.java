@@ -10,4 +10,10 @@ public interface BundleDAO {
 
     void generateTestData();
 
+    void sync();
+
+    void settle();
+
+    void close();
+
 }
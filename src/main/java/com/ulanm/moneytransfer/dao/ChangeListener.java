@@ -0,0 +1,11 @@
+package com.ulanm.moneytransfer.dao;
+
+import com.ulanm.moneytransfer.model.GenericModel;
+
+public interface ChangeListener<T extends GenericModel> {
+
+    void submitted(T entity);
+
+    void deleted(String id);
+
+}
@@ -0,0 +1,8 @@
+package com.ulanm.moneytransfer.dao;
+
+public interface IdGenerator {
+
+    // Returns an ID which no other call of this generator has returned.
+    String nextId();
+
+}
@@ -2,4 +2,13 @@ package com.ulanm.moneytransfer.dao;
 
 import com.ulanm.moneytransfer.model.impl.Transaction;
 
-public interface TransactionDAO extends GenericDAO<Transaction> {}
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TransactionDAO extends GenericDAO<Transaction> {
+
+    List<Transaction> getByAccountId(String accountId);
+
+    List<Transaction> getByAccountId(String accountId, LocalDateTime from, String afterId, LocalDateTime to, int limit);
+
+}
@@ -2,4 +2,13 @@ package com.ulanm.moneytransfer.dao;
 
 import com.ulanm.moneytransfer.model.impl.User;
 
-public interface UserDAO extends GenericDAO<User> {}
+import java.util.List;
+
+public interface UserDAO extends GenericDAO<User> {
+
+    List<User> getPage(String afterId, int limit);
+
+    // Users whose name contains, or starts with when prefix is true, the given name ignoring case.
+    List<User> findByName(String name, boolean prefix, int limit);
+
+}
@@ -1,14 +1,32 @@
 package com.ulanm.moneytransfer.dao.impl;
 
 import com.ulanm.moneytransfer.dao.AccountDAO;
+import com.ulanm.moneytransfer.dao.ChangeListener;
 import com.ulanm.moneytransfer.model.impl.Account;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class AccountInMemoryDAO implements AccountDAO {
 
-    private static final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private static final long ANY_VERSION = -1;
+
+    private static final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+    private static final Map<String, Set<String>> ownerIndex = new ConcurrentHashMap<>();
+
+    private static final Map<String, String> indexedOwners = new ConcurrentHashMap<>();
+
+    private final ChangeListener<Account> listener;
+
+    public AccountInMemoryDAO() {
+        this(null);
+    }
+
+    public AccountInMemoryDAO(ChangeListener<Account> listener) {
+        this.listener = listener;
+    }
 
     @Override
     public List<Account> getAll() {
@@ -21,36 +39,110 @@ public class AccountInMemoryDAO implements AccountDAO {
     }
 
     @Override
-    public boolean submit(Account entity) {
-        synchronized (accounts) {
-            if (accounts.get(entity.getId()) == entity)
-                return true;
-            if (accounts.get(entity.getId()) == null)
-                return false;
-            accounts.put(entity.getId(), entity);
-            return accounts.get(entity.getId()) == entity;
+    public List<Account> getByOwnerId(String ownerId) {
+        Set<String> ids = ownerIndex.get(ownerId);
+        List<Account> result = new ArrayList<>();
+        if (ids == null)
+            return result;
+        for (String id : ids) {
+            Account account = accounts.get(id);
+            if (account != null)
+                result.add(account);
         }
+        return result;
+    }
+
+    @Override
+    public boolean submit(Account entity) {
+        return replace(entity, ANY_VERSION) != null;
+    }
+
+    @Override
+    public Account compareAndSubmit(Account entity, long expectedVersion) {
+        return replace(entity, expectedVersion);
+    }
+
+    private Account replace(Account entity, long expectedVersion) {
+        Account[] stored = new Account[1];
+        accounts.computeIfPresent(entity.getId(), (id, current) -> {
+            if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion)
+                return current;
+            stored[0] = entity.snapshot(current.getVersion() + 1);
+            index(stored[0]);
+            if (listener != null)
+                listener.submitted(stored[0]);
+            return stored[0];
+        });
+        return stored[0];
     }
 
     @Override
     public boolean delete(Account entity) {
-        synchronized (accounts) {
-            accounts.remove(entity.getId());
-            return accounts.get(entity.getId()) == null;
-        }
+        accounts.computeIfPresent(entity.getId(), (id, current) -> {
+            unindex(id);
+            if (listener != null)
+                listener.deleted(id);
+            return null;
+        });
+        return accounts.get(entity.getId()) == null;
     }
 
     @Override
     public Account create() {
-        Account account;
-        String id;
-        synchronized (accounts) {
-            do id = UUID.randomUUID().toString();
-            while (accounts.get(id) != null);
-            account = new Account(id);
-            accounts.put(id, account);
-        }
+        Account account = new Account(InMemoryBundleDAO.nextId());
+        Account snapshot = account.snapshot(0);
+        if (accounts.putIfAbsent(account.getId(), snapshot) != null)
+            throw new IllegalStateException("Duplicate account ID: " + account.getId());
+        if (listener != null)
+            listener.submitted(snapshot);
         return account;
     }
 
+    // Account a stored transaction refers to: the current account or a placeholder once it is deleted.
+    static Account reference(String id) {
+        if (id.equals(Account.EXTERNAL.getId()))
+            return Account.EXTERNAL;
+        Account account = accounts.get(id);
+        return account != null ? account : new Account(id);
+    }
+
+    static Collection<Account> values() {
+        return Collections.unmodifiableCollection(accounts.values());
+    }
+
+    public void restore(Account entity, long version) {
+        accounts.compute(entity.getId(), (id, current) -> {
+            Account snapshot = entity.snapshot(version);
+            index(snapshot);
+            return snapshot;
+        });
+    }
+
+    private static void index(Account account) {
+        String ownerId = account.getOwner() == null ? null : account.getOwner().getId();
+        String previousOwnerId = indexedOwners.get(account.getId());
+        if (Objects.equals(ownerId, previousOwnerId))
+            return;
+        unindex(account.getId());
+        if (ownerId != null) {
+            ownerIndex.compute(ownerId, (key, ids) -> {
+                if (ids == null)
+                    ids = ConcurrentHashMap.newKeySet();
+                ids.add(account.getId());
+                return ids;
+            });
+            indexedOwners.put(account.getId(), ownerId);
+        }
+    }
+
+    private static void unindex(String accountId) {
+        String ownerId = indexedOwners.remove(accountId);
+        if (ownerId == null)
+            return;
+        ownerIndex.computeIfPresent(ownerId, (key, ids) -> {
+            ids.remove(accountId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
 }
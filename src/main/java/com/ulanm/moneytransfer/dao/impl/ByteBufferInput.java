@@ -0,0 +1,132 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+class ByteBufferInput implements DataInput {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException {
+        readFully(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readFully(byte[] bytes, int offset, int length) throws IOException {
+        if (buffer.remaining() < length)
+            throw new EOFException();
+        buffer.get(bytes, offset, length);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        try {
+            return buffer.get();
+        }
+        catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        try {
+            return buffer.getShort();
+        }
+        catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        try {
+            return buffer.getInt();
+        }
+        catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        try {
+            return buffer.getLong();
+        }
+        catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    // Reads bytes as Latin-1 characters up to a line terminator, as DataInput defines it.
+    @Override
+    public String readLine() {
+        if (!buffer.hasRemaining())
+            return null;
+        StringBuilder line = new StringBuilder();
+        while (buffer.hasRemaining()) {
+            char c = (char) (buffer.get() & 0xff);
+            if (c == '\n')
+                break;
+            if (c == '\r') {
+                if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n')
+                    buffer.get();
+                break;
+            }
+            line.append(c);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+}
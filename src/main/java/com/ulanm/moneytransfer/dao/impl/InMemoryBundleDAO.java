@@ -2,6 +2,7 @@ package com.ulanm.moneytransfer.dao.impl;
 
 import com.ulanm.moneytransfer.dao.AccountDAO;
 import com.ulanm.moneytransfer.dao.BundleDAO;
+import com.ulanm.moneytransfer.dao.IdGenerator;
 import com.ulanm.moneytransfer.dao.TransactionDAO;
 import com.ulanm.moneytransfer.dao.UserDAO;
 import com.ulanm.moneytransfer.model.impl.Account;
@@ -15,15 +16,35 @@ import java.util.*;
 
 public class InMemoryBundleDAO implements BundleDAO {
 
-    private final UserDAO userDAO = new UserInMemoryDAO();
-    private final AccountDAO accountDAO = new AccountInMemoryDAO();
-    private final TransactionDAO transactionDAO = new TransactionInMemoryDAO();
+    private final UserDAO userDAO;
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+
+    private static volatile IdGenerator idGenerator = new TimeOrderedIdGenerator();
 
     private static DecimalFormat format = new DecimalFormat("#.00");
     private static List<String> testUserIds = Collections.synchronizedList(new ArrayList<>());
     private static List<String> testAccountIds = Collections.synchronizedList(new ArrayList<>());
     private static List<String> testTransactionIds = Collections.synchronizedList(new ArrayList<>());
 
+    public static void setIdGenerator(IdGenerator idGenerator) {
+        InMemoryBundleDAO.idGenerator = idGenerator;
+    }
+
+    static String nextId() {
+        return idGenerator.nextId();
+    }
+
+    public InMemoryBundleDAO() {
+        this(new UserInMemoryDAO(), new AccountInMemoryDAO(), new TransactionInMemoryDAO());
+    }
+
+    protected InMemoryBundleDAO(UserDAO userDAO, AccountDAO accountDAO, TransactionDAO transactionDAO) {
+        this.userDAO = userDAO;
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+    }
+
     @Override
     public UserDAO getUserDAO() {
         return userDAO;
@@ -39,11 +60,25 @@ public class InMemoryBundleDAO implements BundleDAO {
         return transactionDAO;
     }
 
+    @Override
+    public void sync() {
+    }
+
+    @Override
+    public void settle() {
+    }
+
+    @Override
+    public void close() {
+    }
+
     @Override
     public void generateTestData() {
-        generateTestUsers();
-        generateTestAccounts();
-        generateTestTransactions();
+        synchronized (InMemoryBundleDAO.class) {
+            generateTestUsers();
+            generateTestAccounts();
+            generateTestTransactions();
+        }
     }
 
     private void generateTestUsers() {
@@ -64,11 +99,9 @@ public class InMemoryBundleDAO implements BundleDAO {
         testUserIds.clear();
         for (String name : names) {
             User user = userDAO.create();
-            synchronized (user) {
-                user.setName(name);
-                testUserIds.add(user.getId());
-                userDAO.submit(user);
-            }
+            user.setName(name);
+            testUserIds.add(user.getId());
+            userDAO.submit(user);
         }
     }
 
@@ -85,15 +118,13 @@ public class InMemoryBundleDAO implements BundleDAO {
             for (int i = 0; i < accounts; i++) {
                 Account newAccount = accountDAO.create();
                 String amount = format.format(random.nextDouble() * 10000);
-                synchronized (newAccount) {
-                    newAccount.setOwner(user);
-                    newAccount.setName("account_" + i);
-                    newAccount.setCurrency(Currency.getInstance("USD"));
-                    newAccount.setBalance(new BigDecimal(amount));
-                    newAccount.setActive(true);
-                    accountDAO.submit(newAccount);
-                    testAccountIds.add(newAccount.getId());
-                }
+                newAccount.setOwner(user);
+                newAccount.setName("account_" + i);
+                newAccount.setCurrency(Currency.getInstance("USD"));
+                newAccount.setBalance(new BigDecimal(amount));
+                newAccount.setActive(true);
+                accountDAO.submit(newAccount);
+                testAccountIds.add(newAccount.getId());
             }
         }
     }
@@ -118,17 +149,15 @@ public class InMemoryBundleDAO implements BundleDAO {
                         Transaction.TransactionStatus.EXECUTED :
                         Transaction.TransactionStatus.FAILED;
                 String amount = format.format(random.nextDouble() * 10000);
-                synchronized (transaction) {
-                    transaction.setSourceAccount(account);
-                    transaction.setDestinationAccount(to);
-                    transaction.setStatus(status);
-                    transaction.setExecutionDateTime(LocalDateTime.now());
-                    transaction.setComment("money transfer #" + i);
-                    transaction.setCurrency(Currency.getInstance("USD"));
-                    transaction.setAmount(new BigDecimal(amount));
-                    transactionDAO.submit(transaction);
-                    testTransactionIds.add(transaction.getId());
-                }
+                transaction.setSourceAccount(account);
+                transaction.setDestinationAccount(to);
+                transaction.setStatus(status);
+                transaction.setExecutionDateTime(LocalDateTime.now());
+                transaction.setComment("money transfer #" + i);
+                transaction.setCurrency(Currency.getInstance("USD"));
+                transaction.setAmount(new BigDecimal(amount));
+                transactionDAO.submit(transaction);
+                testTransactionIds.add(transaction.getId());
             }
         }
     }
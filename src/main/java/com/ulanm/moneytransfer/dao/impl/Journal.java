@@ -0,0 +1,353 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/*
+ * Append-only log of length-prefixed, checksummed records. Appends are linked into a lock-free
+ * queue and written by a single thread, which forces every batch to disk with one fsync (group
+ * commit) and then wakes the threads waiting in sync(). A thread calling sync() waits until its
+ * own appends are durable.
+ *
+ * Records are addressed by their position in the whole log, which is split into segment files
+ * named after the position of their first record. Segments that lie entirely before a snapshot
+ * position are deleted by release().
+ */
+class Journal implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    static final long SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_FORMAT = "%s.%020d";
+
+    private final Path path;
+
+    private final long segmentSize;
+
+    private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+
+    // only waited on by threads in sync(), notified once per group commit
+    private final Object lock = new Object();
+
+    private final ThreadLocal<Long> lastAppended = new ThreadLocal<>();
+
+    // position of the last record appended by each thread which has not called sync() since
+    private final Map<Thread, Long> unsynced = new ConcurrentHashMap<>();
+
+    // last appended record, its end is the position of the next one
+    private final AtomicReference<Record> tail;
+
+    private final Thread writer;
+
+    // the following are only used by the writer thread
+    private FileChannel channel;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    private Record written;
+
+    private volatile long synced;
+
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+
+    interface Replayer {
+
+        void replay(DataInput record) throws IOException;
+
+    }
+
+    Journal(Path path, long from, Replayer replayer) throws IOException {
+        this(path, from, replayer, SEGMENT_SIZE);
+    }
+
+    // A new segment is started once the current one has grown to the segment size.
+    Journal(Path path, long from, Replayer replayer, long segmentSize) throws IOException {
+        this.path = path;
+        this.segmentSize = segmentSize;
+        findSegments();
+        long position = replay(from, replayer);
+        written = new Record(null, position);
+        tail = new AtomicReference<>(written);
+        synced = position;
+        writer = new Thread(this::write, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void findSegments() throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.length() == 20 && suffix.chars().allMatch(Character::isDigit))
+                    segments.add(Long.parseLong(suffix));
+            }
+        }
+        if (segments.isEmpty() && Files.isRegularFile(path)) {
+            Files.move(path, segment(0));
+            segments.add(0L);
+        }
+    }
+
+    private Path segment(long start) {
+        return path.resolveSibling(String.format(SEGMENT_FORMAT, path.getFileName(), start));
+    }
+
+    private long replay(long from, Replayer replayer) throws IOException {
+        if (segments.isEmpty()) {
+            segments.add(from);
+            channel = open(from);
+            return from;
+        }
+        Long first = segments.floor(from);
+        if (first == null)
+            throw new IOException("Journal " + path + " has no records at position " + from + ".");
+        long position = from;
+        for (long start : segments.tailSet(first, true)) {
+            if (start > position)
+                throw new IOException("Journal " + path + " is missing records from position " + position + ".");
+            FileChannel segment = open(start);
+            long end = start + replay(segment, position - start, replayer);
+            if (start == segments.last()) {
+                segment.truncate(end - start);
+                segment.position(end - start);
+                channel = segment;
+                return end;
+            }
+            if (end - start != segment.size()) {
+                segment.close();
+                throw new IOException("Journal " + path + " is corrupt at position " + end + ".");
+            }
+            segment.close();
+            position = end;
+        }
+        throw new IllegalStateException();
+    }
+
+    private FileChannel open(long start) throws IOException {
+        return FileChannel.open(segment(start), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static long replay(FileChannel segment, long offset, Replayer replayer) throws IOException {
+        if (offset > segment.size())
+            throw new IOException("Journal segment is shorter than position " + offset + ".");
+        segment.position(offset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(segment)));
+        long position = offset;
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] record;
+            int checksum;
+            try {
+                int length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE)
+                    break;
+                record = new byte[length];
+                in.readFully(record);
+            }
+            catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != checksum)
+                break;
+            replayer.replay(new DataInputStream(new ByteArrayInputStream(record)));
+            position += HEADER_SIZE + record.length;
+        }
+        return position;
+    }
+
+    void append(byte[] record) {
+        if (closed)
+            throw new IllegalStateException("Journal is closed.");
+        Record appended = new Record(record, 0);
+        // taken before the record gets its position, so a checkpoint never passes the record unseen
+        unsynced.put(Thread.currentThread(), tail.get().end);
+        Record last;
+        do {
+            last = tail.get();
+            appended.end = last.end + HEADER_SIZE + record.length;
+        }
+        while (!tail.compareAndSet(last, appended));
+        last.next = appended;
+        lastAppended.set(appended.end);
+        LockSupport.unpark(writer);
+    }
+
+    void sync() {
+        Long position = lastAppended.get();
+        if (position == null)
+            return;
+        unsynced.remove(Thread.currentThread());
+        awaitSynced(position);
+    }
+
+    // Declares that the changes of the calling thread are applied, without waiting for them to be durable.
+    void settle() {
+        unsynced.remove(Thread.currentThread());
+    }
+
+    /*
+     * Returns a durable position such that every record before it has been applied to the maps.
+     * Records are appended while the map entry is being updated, so the last record of a thread
+     * which has not reached sync() yet may still be invisible and the position is kept before it.
+     */
+    long checkpoint() {
+        long position = tail.get().end;
+        Iterator<Map.Entry<Thread, Long>> iterator = unsynced.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Thread, Long> entry = iterator.next();
+            if (!entry.getKey().isAlive())
+                iterator.remove();
+            else
+                position = Math.min(position, entry.getValue());
+        }
+        awaitSynced(position);
+        return position;
+    }
+
+    void release(long position) throws IOException {
+        for (long start : segments) {
+            Long next = segments.higher(start);
+            if (next == null || next > position)
+                return;
+            Files.deleteIfExists(segment(start));
+            segments.remove(start);
+        }
+    }
+
+    private void awaitSynced(long position) {
+        if (synced >= position)
+            return;
+        synchronized (lock) {
+            while (synced < position && failure == null) {
+                try {
+                    lock.wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal.", e);
+                }
+            }
+        }
+        if (synced < position)
+            throw new UncheckedIOException("Journal write failed.", failure);
+    }
+
+    private void write() {
+        while (true) {
+            Record next = written.next;
+            if (next == null) {
+                // every record is linked once the tail is reached, so nothing is left behind on close
+                if (closed && written == tail.get())
+                    return;
+                LockSupport.park(this);
+                continue;
+            }
+            // everything linked so far goes to disk with one fsync
+            for (; next != null; next = next.next) {
+                if (buffer.remaining() < HEADER_SIZE + next.bytes.length) {
+                    ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + HEADER_SIZE + next.bytes.length));
+                    buffer.flip();
+                    grown.put(buffer);
+                    buffer = grown;
+                }
+                buffer.putInt(next.bytes.length).putInt(next.checksum).put(next.bytes);
+                written = next;
+            }
+            long target = written.end;
+            try {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+                if (channel.size() >= segmentSize)
+                    roll(target);
+            }
+            catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            finally {
+                buffer.clear();
+            }
+            synchronized (lock) {
+                synced = target;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void roll(long position) throws IOException {
+        FileChannel next = open(position);
+        segments.add(position);
+        channel.close();
+        channel = next;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private static final class Record {
+
+        private final byte[] bytes;
+
+        private final int checksum;
+
+        // set before the record is linked, a record is only read once linked
+        private long end;
+
+        private volatile Record next;
+
+        Record(byte[] bytes, long end) {
+            this.bytes = bytes;
+            this.end = end;
+            this.checksum = bytes == null ? 0 : checksum(bytes);
+        }
+
+        private static int checksum(byte[] bytes) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return (int) crc.getValue();
+        }
+
+    }
+
+}
@@ -0,0 +1,339 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.dao.ChangeListener;
+import com.ulanm.moneytransfer.model.GenericModel;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.User;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Currency;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class JournalBundleDAO extends InMemoryBundleDAO {
+
+    private static final byte USER = 1;
+    private static final byte USER_DELETED = 2;
+    private static final byte ACCOUNT = 3;
+    private static final byte ACCOUNT_DELETED = 4;
+    private static final byte TRANSACTION = 5;
+    private static final byte TRANSACTION_DELETED = 6;
+    // account with its version, ACCOUNT records written before versions were kept are counted on replay instead
+    private static final byte VERSIONED_ACCOUNT = 7;
+
+    private static final Logger LOGGER = Logger.getLogger(JournalBundleDAO.class.getName());
+
+    private final Journal journal;
+
+    private final Path snapshotPath;
+
+    private final ScheduledExecutorService snapshots;
+
+    private JournalBundleDAO(Journal journal, Path snapshotPath, long snapshotInterval) {
+        super(
+                new UserInMemoryDAO(new JournalListener<User>(journal, USER, USER_DELETED) {
+                    @Override
+                    void write(User user, DataOutput out) throws IOException {
+                        writeUser(user, out);
+                    }
+                }),
+                new AccountInMemoryDAO(new JournalListener<Account>(journal, VERSIONED_ACCOUNT, ACCOUNT_DELETED) {
+                    @Override
+                    void write(Account account, DataOutput out) throws IOException {
+                        writeAccount(account, out);
+                    }
+                }),
+                new TransactionInMemoryDAO(new JournalListener<Transaction>(journal, TRANSACTION, TRANSACTION_DELETED) {
+                    @Override
+                    void write(Transaction transaction, DataOutput out) throws IOException {
+                        writeTransaction(transaction, out);
+                    }
+                })
+        );
+        this.journal = journal;
+        this.snapshotPath = snapshotPath;
+        this.snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (snapshotInterval > 0)
+            snapshots.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+    }
+
+    /*
+     * Loads the latest snapshot, replays the journal from the position the snapshot was started at
+     * and takes a new snapshot every snapshotInterval seconds, or never when it is not positive.
+     */
+    public static JournalBundleDAO open(Path path, long snapshotInterval) throws IOException {
+        return open(path, snapshotInterval, Journal.SEGMENT_SIZE);
+    }
+
+    static JournalBundleDAO open(Path path, long snapshotInterval, long segmentSize) throws IOException {
+        Path snapshotPath = path.resolveSibling(path.getFileName() + ".snapshot");
+        long position = Snapshot.load(snapshotPath, JournalBundleDAO::replay);
+        return new JournalBundleDAO(
+                new Journal(path, position, JournalBundleDAO::replay, segmentSize), snapshotPath, snapshotInterval);
+    }
+
+    /*
+     * Writes the current state while other threads keep changing it. An entity changed during the
+     * snapshot may be written in either version, so replay starts from the journal position taken
+     * before the first entity is read, and journal segments before it are deleted afterwards.
+     */
+    public synchronized void snapshot() throws IOException {
+        long position = journal.checkpoint();
+        try (Snapshot.Writer writer = Snapshot.create(snapshotPath, position)) {
+            for (User user : UserInMemoryDAO.values())
+                writer.append(out -> {
+                    out.writeByte(USER);
+                    writeUser(user, out);
+                });
+            for (Account account : AccountInMemoryDAO.values())
+                writer.append(out -> {
+                    out.writeByte(VERSIONED_ACCOUNT);
+                    writeAccount(account, out);
+                });
+            for (Transaction transaction : TransactionInMemoryDAO.values())
+                writer.append(out -> {
+                    out.writeByte(TRANSACTION);
+                    writeTransaction(transaction, out);
+                });
+            writer.commit();
+        }
+        journal.release(position);
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        }
+        catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Snapshot failed.", e);
+        }
+    }
+
+    @Override
+    public void sync() {
+        journal.sync();
+    }
+
+    @Override
+    public void settle() {
+        journal.settle();
+    }
+
+    @Override
+    public void close() {
+        snapshots.shutdown();
+        try {
+            snapshots.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private abstract static class JournalListener<T extends GenericModel>
+            implements ChangeListener<T> {
+
+        private final Journal journal;
+
+        private final byte submittedType;
+
+        private final byte deletedType;
+
+        JournalListener(Journal journal, byte submittedType, byte deletedType) {
+            this.journal = journal;
+            this.submittedType = submittedType;
+            this.deletedType = deletedType;
+        }
+
+        abstract void write(T entity, DataOutput out) throws IOException;
+
+        @Override
+        public void submitted(T entity) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeByte(submittedType);
+                write(entity, out);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            journal.append(bytes.toByteArray());
+        }
+
+        @Override
+        public void deleted(String id) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeByte(deletedType);
+                writeString(id, out);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            journal.append(bytes.toByteArray());
+        }
+
+    }
+
+    private static void writeUser(User user, DataOutput out) throws IOException {
+        writeString(user.getId(), out);
+        writeDateTime(user.getCreationDateTime(), out);
+        writeString(user.getName(), out);
+    }
+
+    private static void writeAccount(Account account, DataOutput out) throws IOException {
+        out.writeLong(account.getVersion());
+        writeString(account.getId(), out);
+        writeDateTime(account.getCreationDateTime(), out);
+        writeString(account.getOwner() == null ? null : account.getOwner().getId(), out);
+        writeString(account.getName(), out);
+        writeString(account.getCurrency() == null ? null : account.getCurrency().getCurrencyCode(), out);
+        out.writeLong(account.getBalanceUnits());
+        out.writeBoolean(account.isActive());
+    }
+
+    private static void writeTransaction(Transaction transaction, DataOutput out) throws IOException {
+        writeString(transaction.getId(), out);
+        writeDateTime(transaction.getCreationDateTime(), out);
+        writeString(transaction.getSourceAccount() == null ? null : transaction.getSourceAccount().getId(), out);
+        writeString(transaction.getDestinationAccount() == null ? null : transaction.getDestinationAccount().getId(), out);
+        writeString(transaction.getCurrency() == null ? null : transaction.getCurrency().getCurrencyCode(), out);
+        out.writeLong(transaction.getAmountUnits());
+        writeString(transaction.getComment(), out);
+        writeString(transaction.getStatus().name(), out);
+        writeDateTime(transaction.getExecutionDateTime(), out);
+    }
+
+    private static void replay(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case USER:
+                new UserInMemoryDAO().restore(readUser(in));
+                break;
+            case USER_DELETED:
+                new UserInMemoryDAO().delete(new User(readString(in)));
+                break;
+            case ACCOUNT: {
+                Account account = readAccount(in);
+                Account current = new AccountInMemoryDAO().getById(account.getId());
+                new AccountInMemoryDAO().restore(account, current == null ? 0 : current.getVersion() + 1);
+                break;
+            }
+            case VERSIONED_ACCOUNT: {
+                long version = in.readLong();
+                new AccountInMemoryDAO().restore(readAccount(in), version);
+                break;
+            }
+            case ACCOUNT_DELETED:
+                new AccountInMemoryDAO().delete(new Account(readString(in)));
+                break;
+            case TRANSACTION:
+                new TransactionInMemoryDAO().restore(readTransaction(in));
+                break;
+            case TRANSACTION_DELETED:
+                new TransactionInMemoryDAO().delete(new Transaction(readString(in)));
+                break;
+            default:
+                throw new IOException("Unknown journal record type: " + type);
+        }
+    }
+
+    private static User readUser(DataInput in) throws IOException {
+        User user = new User(readString(in), readDateTime(in));
+        user.setName(readString(in));
+        return user;
+    }
+
+    private static Account readAccount(DataInput in) throws IOException {
+        Account account = new Account(readString(in), readDateTime(in));
+        account.setOwner(findUser(readString(in)));
+        account.setName(readString(in));
+        account.setCurrency(readCurrency(in));
+        account.setBalanceUnits(in.readLong());
+        account.setActive(in.readBoolean());
+        return account;
+    }
+
+    private static Transaction readTransaction(DataInput in) throws IOException {
+        Transaction transaction = new Transaction(readString(in), readDateTime(in));
+        transaction.setSourceAccount(findAccount(readString(in)));
+        transaction.setDestinationAccount(findAccount(readString(in)));
+        transaction.setCurrency(readCurrency(in));
+        transaction.setAmountUnits(in.readLong());
+        transaction.setComment(readString(in));
+        transaction.setStatus(Transaction.TransactionStatus.valueOf(readString(in)));
+        transaction.setExecutionDateTime(readDateTime(in));
+        return transaction;
+    }
+
+    private static User findUser(String id) {
+        if (id == null)
+            return null;
+        User user = new UserInMemoryDAO().getById(id);
+        return user != null ? user : new User(id);
+    }
+
+    private static Account findAccount(String id) {
+        return id == null ? null : AccountInMemoryDAO.reference(id);
+    }
+
+    private static Currency readCurrency(DataInput in) throws IOException {
+        String code = readString(in);
+        return code == null ? null : Currency.getInstance(code);
+    }
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDateTime(LocalDateTime value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.dao.IdGenerator;
+
+import java.util.UUID;
+
+// Random (version 4) UUIDs, unique with high probability only.
+public class RandomIdGenerator implements IdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+
+}
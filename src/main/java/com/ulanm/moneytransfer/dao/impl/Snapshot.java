@@ -0,0 +1,152 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/*
+ * Binary image of the DAO state tagged with the journal position it was started at. Entries use
+ * the journal record encoding and are grouped into checksummed blocks, each of which is memory
+ * mapped on load. A zero-length block marks the end of a complete snapshot.
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x4d54534e;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int BLOCK_HEADER_SIZE = 8;
+
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private Snapshot() {
+    }
+
+    interface Entry {
+
+        void write(DataOutput out) throws IOException;
+
+    }
+
+    static long load(Path path, Journal.Replayer replayer) throws IOException {
+        if (!Files.exists(path))
+            return 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException("Snapshot " + path + " is truncated.");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("Unsupported snapshot " + path + ".");
+            long position = header.getLong();
+            long offset = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            while (true) {
+                if (offset + BLOCK_HEADER_SIZE > size)
+                    throw new IOException("Snapshot " + path + " is truncated.");
+                MappedByteBuffer blockHeader = channel.map(FileChannel.MapMode.READ_ONLY, offset, BLOCK_HEADER_SIZE);
+                int length = blockHeader.getInt();
+                int checksum = blockHeader.getInt();
+                offset += BLOCK_HEADER_SIZE;
+                if (length == 0)
+                    return position;
+                if (length < 0 || offset + length > size)
+                    throw new IOException("Snapshot " + path + " is truncated.");
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                crc.reset();
+                crc.update(block.duplicate());
+                if ((int) crc.getValue() != checksum)
+                    throw new IOException("Snapshot " + path + " is corrupt at offset " + offset + ".");
+                DataInput in = new ByteBufferInput(block);
+                while (block.hasRemaining())
+                    replayer.replay(in);
+                offset += length;
+            }
+        }
+    }
+
+    static Writer create(Path path, long position) throws IOException {
+        return new Writer(path, position);
+    }
+
+    /*
+     * Writes the snapshot to a temporary file which replaces the previous snapshot on commit,
+     * so a crash while writing leaves the previous snapshot in place.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path path;
+
+        private final Path temporary;
+
+        private final FileChannel channel;
+
+        private final DataOutputStream file;
+
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + BLOCK_SIZE / 4);
+
+        private final DataOutputStream out = new DataOutputStream(block);
+
+        private final CRC32 crc = new CRC32();
+
+        private boolean committed;
+
+        private Writer(Path path, long position) throws IOException {
+            this.path = path;
+            this.temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.file = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeLong(position);
+        }
+
+        void append(Entry entry) throws IOException {
+            entry.write(out);
+            if (block.size() >= BLOCK_SIZE)
+                flushBlock();
+        }
+
+        void commit() throws IOException {
+            if (block.size() > 0)
+                flushBlock();
+            file.writeInt(0);
+            file.writeInt(0);
+            file.flush();
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        private void flushBlock() throws IOException {
+            out.flush();
+            byte[] bytes = block.toByteArray();
+            block.reset();
+            crc.reset();
+            crc.update(bytes);
+            file.writeInt(bytes.length);
+            file.writeInt((int) crc.getValue());
+            file.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed)
+                return;
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.dao.IdGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Version 7 UUIDs: 48 bits of Unix time in milliseconds followed by a 12-bit counter and 62 random
+ * bits. The time and counter only grow, so the IDs are unique within the process without checking
+ * for collisions, and their strings sort in the order the IDs were generated. When more than 4096
+ * IDs are generated within a millisecond the counter carries over into the time.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+
+    private static final long VERSION = 7L << 12;
+
+    private static final long VARIANT = 0x8000000000000000L;
+
+    private static final long RANDOM_MASK = 0x3fffffffffffffffL;
+
+    // Unix time in milliseconds and counter of the last ID
+    private final AtomicLong last = new AtomicLong();
+
+    @Override
+    public String nextId() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long sequence = last.updateAndGet(previous -> Math.max(previous + 1, now));
+        long mostSignificant = (sequence >>> COUNTER_BITS) << 16 | VERSION | (sequence & ((1 << COUNTER_BITS) - 1));
+        long leastSignificant = VARIANT | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+        return new UUID(mostSignificant, leastSignificant).toString();
+    }
+
+}
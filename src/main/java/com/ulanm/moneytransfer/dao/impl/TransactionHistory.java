@@ -0,0 +1,704 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.dao.ChangeListener;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Append-only store of completed transactions kept outside of the Java heap. Every transaction
+ * takes a fixed-width record in a memory-mapped temporary file, comments are interned and appended
+ * once to a second one. Records are found by id through off-heap hash tables split into stripes, each with its own
+ * lock, and listed by account through off-heap record lists locked per account. Records keep the
+ * version of their transaction and are read back as snapshots. Only transactions with UUID ids and
+ * UUID account ids are accepted, deleted records are marked and not reused.
+ */
+final class TransactionHistory {
+
+    private static final int RECORD_SIZE = 104;
+
+    private static final int CHUNK_SHIFT = 20;
+
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+
+    private static final int TEXT_CHUNK_SHIFT = 26;
+
+    private static final int TEXT_CHUNK_SIZE = 1 << TEXT_CHUNK_SHIFT;
+
+    private static final int ID_MOST = 0;
+    private static final int ID_LEAST = 8;
+    private static final int CREATION_SECONDS = 16;
+    private static final int CREATION_NANOS = 24;
+    private static final int EXECUTION_NANOS = 28;
+    private static final int EXECUTION_SECONDS = 32;
+    private static final int SOURCE_MOST = 40;
+    private static final int SOURCE_LEAST = 48;
+    private static final int DESTINATION_MOST = 56;
+    private static final int DESTINATION_LEAST = 64;
+    private static final int AMOUNT = 72;
+    private static final int COMMENT = 80;
+    private static final int CURRENCY = 88;
+    private static final int STATUS = 91;
+    private static final int FLAGS = 92;
+    private static final int VERSION = 96;
+
+    private static final int CURRENCY_LENGTH = 3;
+
+    private static final int NONE = -1;
+
+    private static final byte DELETED = 1;
+
+    private static final byte SOURCE = 2;
+
+    private static final byte DESTINATION = 4;
+
+    private static final int EMPTY = 0;
+
+    private static final int REMOVED = -1;
+
+    private static final int STRIPE_SHIFT = 6;
+
+    private static final int STRIPES = 1 << STRIPE_SHIFT;
+
+    private static final int INITIAL_TABLE_SIZE = 1 << 4;
+
+    private final MappedFile records = new MappedFile(".history", (long) CHUNK_RECORDS * RECORD_SIZE);
+
+    private final MappedFile text = new MappedFile(".comments", TEXT_CHUNK_SIZE);
+
+    private final AtomicInteger recordCount = new AtomicInteger();
+
+    private final AtomicLong textSize = new AtomicLong();
+
+    // text offset of every comment stored so far, so that records with the same comment share it
+    private final ConcurrentMap<String, Long> comments = new ConcurrentHashMap<>();
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final ConcurrentMap<String, Records> accountRecords = new ConcurrentHashMap<>();
+
+    TransactionHistory() {
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe();
+    }
+
+    static boolean accepts(Transaction transaction) {
+        return transaction.getStatus() != Transaction.TransactionStatus.CREATED && parse(transaction.getId()) != null &&
+                (transaction.getSourceAccount() == null || parse(transaction.getSourceAccount().getId()) != null) &&
+                (transaction.getDestinationAccount() == null || parse(transaction.getDestinationAccount().getId()) != null);
+    }
+
+    Transaction get(String id) {
+        long[] key = parse(id);
+        if (key == null)
+            return null;
+        Stripe stripe = stripe(key);
+        stripe.lock.readLock().lock();
+        try {
+            int record = stripe.find(key[0], key[1]);
+            return record == NONE ? null : read(record);
+        }
+        finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Upserts an accepted transaction, a new one keeps its version and a stored one gets its next
+     * version. The listener is called with the stored snapshot while the id is locked.
+     */
+    void put(Transaction transaction, ChangeListener<Transaction> listener) {
+        long[] key = parse(transaction.getId());
+        Stripe stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            Transaction snapshot = store(stripe, key, transaction);
+            if (listener != null)
+                listener.submitted(snapshot);
+        }
+        finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    // Stores the next version of an accepted transaction only when it is stored, the listener is called while the id is locked.
+    boolean replace(Transaction transaction, ChangeListener<Transaction> listener) {
+        long[] key = parse(transaction.getId());
+        Stripe stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            if (stripe.find(key[0], key[1]) == NONE)
+                return false;
+            Transaction snapshot = store(stripe, key, transaction);
+            if (listener != null)
+                listener.submitted(snapshot);
+            return true;
+        }
+        finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    // Returns the removed transaction, the listener is called while the id is locked.
+    Transaction remove(String id, ChangeListener<Transaction> listener) {
+        long[] key = parse(id);
+        if (key == null)
+            return null;
+        Stripe stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            int position = stripe.position(key[0], key[1]);
+            if (position == NONE)
+                return null;
+            int record = stripe.table.getInt(position * Integer.BYTES) - 1;
+            Transaction transaction = read(record);
+            List<Records> involved = lock(new TreeSet<>(involvedAccounts(record)));
+            try {
+                unindex(record);
+                MappedByteBuffer chunk = chunk(record);
+                int offset = offset(record);
+                chunk.put(offset + FLAGS, (byte) (chunk.get(offset + FLAGS) | DELETED));
+            }
+            finally {
+                unlock(involved);
+            }
+            stripe.table.putInt(position * Integer.BYTES, REMOVED);
+            if (listener != null)
+                listener.deleted(id);
+            return transaction;
+        }
+        finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    List<Transaction> getByAccountId(String accountId, LocalDateTime from, String afterId, LocalDateTime to, int limit) {
+        List<Transaction> result = new ArrayList<>();
+        Records index = accountRecords.get(accountId);
+        if (index == null)
+            return result;
+        index.lock.readLock().lock();
+        try {
+            int start = from == null ? 0 : index.lowerBound(from, afterId == null ? "" : afterId, afterId == null);
+            int end = to == null ? index.size : index.lowerBound(to, "", true);
+            for (int i = start; i < end && result.size() < limit; i++)
+                result.add(read(index.get(i)));
+            return result;
+        }
+        finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    // Bytes appended to the comment file so far.
+    long textSize() {
+        return textSize.get();
+    }
+
+    // Weakly consistent, stripe by stripe: transactions stored while iterating may or may not be returned.
+    Iterable<Transaction> values() {
+        return () -> new Iterator<Transaction>() {
+
+            private int stripe = -1;
+
+            private int[] pending = new int[0];
+
+            private int position;
+
+            private Transaction next = advance();
+
+            private Transaction advance() {
+                while (true) {
+                    while (position < pending.length) {
+                        int record = pending[position++];
+                        Stripe current = stripes[stripe];
+                        current.lock.readLock().lock();
+                        try {
+                            if ((chunk(record).get(offset(record) + FLAGS) & DELETED) == 0)
+                                return read(record);
+                        }
+                        finally {
+                            current.lock.readLock().unlock();
+                        }
+                    }
+                    if (++stripe == STRIPES)
+                        return null;
+                    pending = stripes[stripe].records();
+                    position = 0;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Transaction next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                Transaction current = next;
+                next = advance();
+                return current;
+            }
+
+        };
+    }
+
+    // Called with the stripe of the id locked, the accounts of the old and the new record are locked while writing.
+    private Transaction store(Stripe stripe, long[] key, Transaction transaction) {
+        int record = stripe.find(key[0], key[1]);
+        boolean created = record == NONE;
+        Transaction snapshot = transaction.snapshot(created ? transaction.getVersion() : chunk(record).getLong(offset(record) + VERSION) + 1);
+        if (created)
+            record = recordCount.getAndIncrement();
+        SortedSet<String> accounts = new TreeSet<>(created ? Collections.emptySet() : involvedAccounts(record));
+        if (transaction.getSourceAccount() != null)
+            accounts.add(transaction.getSourceAccount().getId());
+        if (transaction.getDestinationAccount() != null)
+            accounts.add(transaction.getDestinationAccount().getId());
+        List<Records> involved = lock(accounts);
+        try {
+            if (!created)
+                unindex(record);
+            write(record, key, snapshot);
+            index(record);
+        }
+        finally {
+            unlock(involved);
+        }
+        if (created)
+            stripe.insert(record);
+        return snapshot;
+    }
+
+    // Accounts are locked in the order of their ids, so that writers never wait for each other in a cycle.
+    private List<Records> lock(SortedSet<String> accounts) {
+        List<Records> involved = new ArrayList<>(accounts.size());
+        for (String account : accounts) {
+            Records index = accountRecords.computeIfAbsent(account, id -> new Records());
+            index.lock.writeLock().lock();
+            involved.add(index);
+        }
+        return involved;
+    }
+
+    private static void unlock(List<Records> involved) {
+        for (int i = involved.size() - 1; i >= 0; i--)
+            involved.get(i).lock.writeLock().unlock();
+    }
+
+    private void write(int record, long[] key, Transaction transaction) {
+        MappedByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        long comment = transaction.getComment() == null ? NONE : comments.computeIfAbsent(transaction.getComment(), this::writeText);
+        byte flags = 0;
+        chunk.putLong(offset + ID_MOST, key[0]);
+        chunk.putLong(offset + ID_LEAST, key[1]);
+        LocalDateTime creation = transaction.getCreationDateTime();
+        chunk.putLong(offset + CREATION_SECONDS, creation.toEpochSecond(ZoneOffset.UTC));
+        chunk.putInt(offset + CREATION_NANOS, creation.getNano());
+        LocalDateTime execution = transaction.getExecutionDateTime();
+        chunk.putLong(offset + EXECUTION_SECONDS, execution == null ? 0 : execution.toEpochSecond(ZoneOffset.UTC));
+        chunk.putInt(offset + EXECUTION_NANOS, execution == null ? NONE : execution.getNano());
+        if (transaction.getSourceAccount() != null) {
+            long[] source = parse(transaction.getSourceAccount().getId());
+            chunk.putLong(offset + SOURCE_MOST, source[0]);
+            chunk.putLong(offset + SOURCE_LEAST, source[1]);
+            flags |= SOURCE;
+        }
+        if (transaction.getDestinationAccount() != null) {
+            long[] destination = parse(transaction.getDestinationAccount().getId());
+            chunk.putLong(offset + DESTINATION_MOST, destination[0]);
+            chunk.putLong(offset + DESTINATION_LEAST, destination[1]);
+            flags |= DESTINATION;
+        }
+        chunk.putLong(offset + AMOUNT, transaction.getAmountUnits());
+        chunk.putLong(offset + COMMENT, comment);
+        String currency = transaction.getCurrency() == null ? null : transaction.getCurrency().getCurrencyCode();
+        for (int i = 0; i < CURRENCY_LENGTH; i++)
+            chunk.put(offset + CURRENCY + i, currency == null ? 0 : (byte) currency.charAt(i));
+        chunk.put(offset + STATUS, (byte) transaction.getStatus().ordinal());
+        chunk.put(offset + FLAGS, flags);
+        chunk.putLong(offset + VERSION, transaction.getVersion());
+    }
+
+    private Transaction read(int record) {
+        MappedByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        byte flags = chunk.get(offset + FLAGS);
+        Transaction transaction = new Transaction(
+                new UUID(chunk.getLong(offset + ID_MOST), chunk.getLong(offset + ID_LEAST)).toString(),
+                LocalDateTime.ofEpochSecond(chunk.getLong(offset + CREATION_SECONDS), chunk.getInt(offset + CREATION_NANOS), ZoneOffset.UTC)
+        );
+        if ((flags & SOURCE) != 0)
+            transaction.setSourceAccount(AccountInMemoryDAO.reference(
+                    new UUID(chunk.getLong(offset + SOURCE_MOST), chunk.getLong(offset + SOURCE_LEAST)).toString()));
+        if ((flags & DESTINATION) != 0)
+            transaction.setDestinationAccount(AccountInMemoryDAO.reference(
+                    new UUID(chunk.getLong(offset + DESTINATION_MOST), chunk.getLong(offset + DESTINATION_LEAST)).toString()));
+        if (chunk.get(offset + CURRENCY) != 0) {
+            char[] currency = new char[CURRENCY_LENGTH];
+            for (int i = 0; i < CURRENCY_LENGTH; i++)
+                currency[i] = (char) chunk.get(offset + CURRENCY + i);
+            transaction.setCurrency(Currency.getInstance(new String(currency)));
+        }
+        transaction.setAmountUnits(chunk.getLong(offset + AMOUNT));
+        long comment = chunk.getLong(offset + COMMENT);
+        if (comment != NONE)
+            transaction.setComment(readText(comment));
+        transaction.setStatus(Transaction.TransactionStatus.values()[chunk.get(offset + STATUS)]);
+        int executionNanos = chunk.getInt(offset + EXECUTION_NANOS);
+        if (executionNanos != NONE)
+            transaction.setExecutionDateTime(LocalDateTime.ofEpochSecond(chunk.getLong(offset + EXECUTION_SECONDS), executionNanos, ZoneOffset.UTC));
+        return transaction.snapshot(chunk.getLong(offset + VERSION));
+    }
+
+    // Appends the length and the UTF-8 bytes of the text, aligned so that the length never spans two chunks.
+    private long writeText(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long position = textSize.getAndAdd((Integer.BYTES + bytes.length + Integer.BYTES - 1) & -Integer.BYTES);
+        text.chunk((int) (position >>> TEXT_CHUNK_SHIFT)).putInt((int) (position & (TEXT_CHUNK_SIZE - 1)), bytes.length);
+        copyText(position + Integer.BYTES, bytes, true);
+        return position;
+    }
+
+    private String readText(long position) {
+        byte[] bytes = new byte[text.chunk((int) (position >>> TEXT_CHUNK_SHIFT)).getInt((int) (position & (TEXT_CHUNK_SIZE - 1)))];
+        copyText(position + Integer.BYTES, bytes, false);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void copyText(long position, byte[] bytes, boolean write) {
+        for (int done = 0; done < bytes.length; ) {
+            long current = position + done;
+            ByteBuffer chunk = text.chunk((int) (current >>> TEXT_CHUNK_SHIFT)).duplicate();
+            chunk.position((int) (current & (TEXT_CHUNK_SIZE - 1)));
+            int length = Math.min(bytes.length - done, chunk.remaining());
+            if (write)
+                chunk.put(bytes, done, length);
+            else
+                chunk.get(bytes, done, length);
+            done += length;
+        }
+    }
+
+    private void index(int record) {
+        for (String account : involvedAccounts(record))
+            accountRecords.get(account).add(record);
+    }
+
+    private void unindex(int record) {
+        for (String account : involvedAccounts(record))
+            accountRecords.get(account).remove(record);
+    }
+
+    private List<String> involvedAccounts(int record) {
+        MappedByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        byte flags = chunk.get(offset + FLAGS);
+        List<String> accounts = new ArrayList<>(2);
+        if ((flags & SOURCE) != 0)
+            accounts.add(new UUID(chunk.getLong(offset + SOURCE_MOST), chunk.getLong(offset + SOURCE_LEAST)).toString());
+        if ((flags & DESTINATION) != 0) {
+            String destination = new UUID(chunk.getLong(offset + DESTINATION_MOST), chunk.getLong(offset + DESTINATION_LEAST)).toString();
+            if (!accounts.contains(destination))
+                accounts.add(destination);
+        }
+        return accounts;
+    }
+
+    private Stripe stripe(long[] key) {
+        return stripes[hash(key[0], key[1]) & (STRIPES - 1)];
+    }
+
+    private MappedByteBuffer chunk(int record) {
+        return records.chunk(record >>> CHUNK_SHIFT);
+    }
+
+    private static int offset(int record) {
+        return (record & (CHUNK_RECORDS - 1)) * RECORD_SIZE;
+    }
+
+    private static int hash(long most, long least) {
+        long hash = (most ^ least) * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    // Parses a UUID in the lower case form produced by UUID.toString(), null for any other id.
+    private static long[] parse(String id) {
+        if (id == null || id.length() != 36)
+            return null;
+        long[] key = new long[2];
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-')
+                    return null;
+                continue;
+            }
+            int digit;
+            if (c >= '0' && c <= '9')
+                digit = c - '0';
+            else if (c >= 'a' && c <= 'f')
+                digit = c - 'a' + 10;
+            else
+                return null;
+            key[digits / 16] = key[digits / 16] << 4 | digit;
+            digits++;
+        }
+        return key;
+    }
+
+    // Temporary file mapped in fixed-size chunks, new chunks are mapped on first use.
+    private static final class MappedFile {
+
+        private final FileChannel channel;
+
+        private final long chunkSize;
+
+        private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+        MappedFile(String suffix, long chunkSize) {
+            this.chunkSize = chunkSize;
+            try {
+                Path file = Files.createTempFile("transactions", suffix);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        MappedByteBuffer chunk(int index) {
+            MappedByteBuffer[] current = chunks;
+            return index < current.length ? current[index] : map(index);
+        }
+
+        private synchronized MappedByteBuffer map(int index) {
+            MappedByteBuffer[] current = chunks;
+            if (index < current.length)
+                return current[index];
+            MappedByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+            try {
+                for (int i = current.length; i <= index; i++)
+                    grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * chunkSize, chunkSize);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks = grown;
+            return grown[index];
+        }
+
+    }
+
+    // Part of the id hash table, holding the record number + 1 of its transactions, open addressing with linear probing.
+    private final class Stripe {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private ByteBuffer table = ByteBuffer.allocateDirect(INITIAL_TABLE_SIZE * Integer.BYTES);
+
+        private int tableSize = INITIAL_TABLE_SIZE;
+
+        private int tableUsed;
+
+        int find(long most, long least) {
+            int position = position(most, least);
+            return position == NONE ? NONE : table.getInt(position * Integer.BYTES) - 1;
+        }
+
+        int position(long most, long least) {
+            int mask = tableSize - 1;
+            for (int position = (hash(most, least) >>> STRIPE_SHIFT) & mask; ; position = (position + 1) & mask) {
+                int entry = table.getInt(position * Integer.BYTES);
+                if (entry == EMPTY)
+                    return NONE;
+                if (entry != REMOVED) {
+                    MappedByteBuffer chunk = chunk(entry - 1);
+                    int offset = offset(entry - 1);
+                    if (chunk.getLong(offset + ID_MOST) == most && chunk.getLong(offset + ID_LEAST) == least)
+                        return position;
+                }
+            }
+        }
+
+        void insert(int record) {
+            if ((tableUsed + 1) * 2 > tableSize)
+                rehash();
+            MappedByteBuffer chunk = chunk(record);
+            int offset = offset(record);
+            int mask = tableSize - 1;
+            int position = (hash(chunk.getLong(offset + ID_MOST), chunk.getLong(offset + ID_LEAST)) >>> STRIPE_SHIFT) & mask;
+            while (table.getInt(position * Integer.BYTES) != EMPTY)
+                position = (position + 1) & mask;
+            table.putInt(position * Integer.BYTES, record + 1);
+            tableUsed++;
+        }
+
+        // Record numbers of the stored transactions in the order they were first stored.
+        int[] records() {
+            lock.readLock().lock();
+            try {
+                int[] stored = new int[tableSize];
+                int count = 0;
+                for (int i = 0; i < tableSize; i++) {
+                    int entry = table.getInt(i * Integer.BYTES);
+                    if (entry > 0)
+                        stored[count++] = entry - 1;
+                }
+                stored = Arrays.copyOf(stored, count);
+                Arrays.sort(stored);
+                return stored;
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void rehash() {
+            ByteBuffer previous = table;
+            int previousSize = tableSize;
+            int live = 0;
+            for (int i = 0; i < previousSize; i++)
+                if (previous.getInt(i * Integer.BYTES) > 0)
+                    live++;
+            tableSize = Math.max(INITIAL_TABLE_SIZE, Integer.highestOneBit(Math.max(1, live) * 4));
+            table = ByteBuffer.allocateDirect(tableSize * Integer.BYTES);
+            tableUsed = 0;
+            for (int i = 0; i < previousSize; i++) {
+                int entry = previous.getInt(i * Integer.BYTES);
+                if (entry > 0)
+                    insert(entry - 1);
+            }
+        }
+
+    }
+
+    // Record numbers of the transactions of one account ordered by creation time and id, in a direct buffer.
+    private final class Records {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private ByteBuffer records = ByteBuffer.allocateDirect(4 * Integer.BYTES);
+
+        private int size;
+
+        int get(int position) {
+            return records.getInt(position * Integer.BYTES);
+        }
+
+        // Transactions are mostly stored in creation order, so the insertion point is usually at the end.
+        void add(int record) {
+            int position = size;
+            if (position > 0 && compare(get(position - 1), record) > 0) {
+                int low = 0;
+                int high = size - 1;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (compare(get(middle), record) > 0)
+                        high = middle;
+                    else
+                        low = middle + 1;
+                }
+                position = low;
+            }
+            if (size * Integer.BYTES == records.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(records.capacity() * 2);
+                ByteBuffer stored = records.duplicate();
+                stored.clear();
+                grown.put(stored);
+                records = grown;
+            }
+            for (int i = size; i > position; i--)
+                records.putInt(i * Integer.BYTES, get(i - 1));
+            records.putInt(position * Integer.BYTES, record);
+            size++;
+        }
+
+        void remove(int record) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int result = compare(get(middle), record);
+                if (result < 0)
+                    low = middle + 1;
+                else if (result > 0)
+                    high = middle - 1;
+                else {
+                    for (int i = middle; i < size - 1; i++)
+                        records.putInt(i * Integer.BYTES, get(i + 1));
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        // First position whose key is greater than, or also equal to when inclusive, the given key.
+        int lowerBound(LocalDateTime dateTime, String id, boolean inclusive) {
+            long seconds = dateTime.toEpochSecond(ZoneOffset.UTC);
+            int nanos = dateTime.getNano();
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int result = compare(get(middle), seconds, nanos, id);
+                if (result < 0 || (result == 0 && !inclusive))
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        private int compare(int record, long seconds, int nanos, String id) {
+            MappedByteBuffer chunk = chunk(record);
+            int offset = offset(record);
+            int result = Long.compare(chunk.getLong(offset + CREATION_SECONDS), seconds);
+            if (result == 0)
+                result = Integer.compare(chunk.getInt(offset + CREATION_NANOS), nanos);
+            if (result == 0)
+                result = new UUID(chunk.getLong(offset + ID_MOST), chunk.getLong(offset + ID_LEAST)).toString().compareTo(id);
+            return result;
+        }
+
+        // Same order as comparing the ids as strings, as the lower case hex digits sort like the numbers.
+        private int compare(int first, int second) {
+            MappedByteBuffer firstChunk = chunk(first);
+            int firstOffset = offset(first);
+            MappedByteBuffer secondChunk = chunk(second);
+            int secondOffset = offset(second);
+            int result = Long.compare(firstChunk.getLong(firstOffset + CREATION_SECONDS), secondChunk.getLong(secondOffset + CREATION_SECONDS));
+            if (result == 0)
+                result = Integer.compare(firstChunk.getInt(firstOffset + CREATION_NANOS), secondChunk.getInt(secondOffset + CREATION_NANOS));
+            if (result == 0)
+                result = Long.compareUnsigned(firstChunk.getLong(firstOffset + ID_MOST), secondChunk.getLong(secondOffset + ID_MOST));
+            if (result == 0)
+                result = Long.compareUnsigned(firstChunk.getLong(firstOffset + ID_LEAST), secondChunk.getLong(secondOffset + ID_LEAST));
+            return result;
+        }
+
+    }
+
+}
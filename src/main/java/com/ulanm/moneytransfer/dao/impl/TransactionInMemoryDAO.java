@@ -1,55 +1,254 @@
 package com.ulanm.moneytransfer.dao.impl;
 
 import com.ulanm.moneytransfer.dao.TransactionDAO;
+import com.ulanm.moneytransfer.dao.ChangeListener;
+import com.ulanm.moneytransfer.model.impl.Account;
 import com.ulanm.moneytransfer.model.impl.Transaction;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+/*
+ * Transactions being created or executed are kept on the heap, executed and failed ones are moved
+ * to the off-heap history store when they are submitted. The history keeps the version of every
+ * transaction and decodes a new snapshot on every read.
+ */
 public class TransactionInMemoryDAO implements TransactionDAO {
 
-    private static final Map<String, Transaction> transactions = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Transaction> transactions = new ConcurrentHashMap<>();
+
+    private static final TransactionHistory history = new TransactionHistory();
+
+    private static final Map<String, ConcurrentNavigableMap<IndexKey, Transaction>> accountIndex =
+            new ConcurrentHashMap<>();
+
+    private final ChangeListener<Transaction> listener;
+
+    public TransactionInMemoryDAO() {
+        this(null);
+    }
+
+    public TransactionInMemoryDAO(ChangeListener<Transaction> listener) {
+        this.listener = listener;
+    }
+
     @Override
     public List<Transaction> getAll() {
-        return Collections.synchronizedList(new ArrayList<>(transactions.values()));
+        List<Transaction> all = new ArrayList<>(transactions.values());
+        for (Transaction transaction : history.values())
+            all.add(transaction);
+        return Collections.synchronizedList(all);
     }
 
     @Override
     public Transaction getById(String id) {
-        return transactions.get(id);
+        Transaction transaction = transactions.get(id);
+        return transaction != null ? transaction : history.get(id);
+    }
+
+    @Override
+    public List<Transaction> getByAccountId(String accountId) {
+        return getByAccountId(accountId, null, null, null, Integer.MAX_VALUE);
+    }
+
+    /*
+     * The heap is read before the history. A transaction completing meanwhile is put into the history
+     * before it leaves the heap, so it is found in at least one of them, and once when found in both.
+     */
+    @Override
+    public List<Transaction> getByAccountId(String accountId, LocalDateTime from, String afterId, LocalDateTime to, int limit) {
+        List<Transaction> result = new ArrayList<>();
+        if (from != null && to != null && !from.isBefore(to))
+            return result;
+        List<Transaction> created = new ArrayList<>();
+        ConcurrentNavigableMap<IndexKey, Transaction> index = accountIndex.get(accountId);
+        if (index != null) {
+            if (from != null)
+                index = index.tailMap(new IndexKey(from, afterId == null ? "" : afterId), afterId == null);
+            if (to != null)
+                index = index.headMap(new IndexKey(to, ""), false);
+            for (Iterator<Transaction> pending = index.values().iterator(); pending.hasNext() && created.size() < limit; )
+                created.add(pending.next());
+        }
+        List<Transaction> stored = history.getByAccountId(accountId, from, afterId, to, limit);
+        if (created.isEmpty())
+            return stored;
+        Iterator<Transaction> pending = created.iterator();
+        Iterator<Transaction> completed = stored.iterator();
+        Transaction nextPending = pending.hasNext() ? pending.next() : null;
+        Transaction nextCompleted = completed.hasNext() ? completed.next() : null;
+        while (result.size() < limit && (nextPending != null || nextCompleted != null)) {
+            int order = nextPending == null ? 1 : nextCompleted == null ? -1
+                    : new IndexKey(nextPending).compareTo(new IndexKey(nextCompleted));
+            if (order < 0) {
+                result.add(nextPending);
+                nextPending = pending.hasNext() ? pending.next() : null;
+            }
+            else {
+                // the same transaction read before and after it completed is returned completed
+                if (order == 0)
+                    nextPending = pending.hasNext() ? pending.next() : null;
+                result.add(nextCompleted);
+                nextCompleted = completed.hasNext() ? completed.next() : null;
+            }
+        }
+        return result;
     }
 
     @Override
     public boolean submit(Transaction entity) {
-        synchronized (transactions) {
-            if (transactions.get(entity.getId()) == entity)
-                return true;
-            if (transactions.get(entity.getId()) == null)
-                return false;
-            transactions.put(entity.getId(), entity);
-            return transactions.get(entity.getId()) == entity;
+        if (!TransactionHistory.accepts(entity)) {
+            Transaction stored = transactions.computeIfPresent(entity.getId(), (id, current) -> {
+                Transaction snapshot = entity.snapshot(current.getVersion() + 1);
+                unindex(current);
+                index(snapshot);
+                if (listener != null)
+                    listener.submitted(snapshot);
+                return snapshot;
+            });
+            return stored != null;
         }
+        boolean[] moved = new boolean[1];
+        transactions.computeIfPresent(entity.getId(), (id, current) -> {
+            history.put(entity.snapshot(current.getVersion() + 1), listener);
+            unindex(current);
+            moved[0] = true;
+            return null;
+        });
+        return moved[0] || history.replace(entity, listener);
     }
 
     @Override
     public boolean delete(Transaction entity) {
-        synchronized (transactions) {
-            transactions.remove(entity.getId());
-            return transactions.get(entity.getId()) == null;
-        }
+        transactions.computeIfPresent(entity.getId(), (id, current) -> {
+            unindex(current);
+            if (listener != null)
+                listener.deleted(id);
+            return null;
+        });
+        history.remove(entity.getId(), listener);
+        return getById(entity.getId()) == null;
     }
 
     @Override
     public Transaction create() {
-        Transaction transaction;
-        String id;
-        synchronized (transactions) {
-            do id = UUID.randomUUID().toString();
-            while (transactions.get(id) != null);
-            transaction = new Transaction(id);
-            transactions.put(id, transaction);
-        }
+        Transaction transaction = new Transaction(InMemoryBundleDAO.nextId());
+        Transaction snapshot = transaction.snapshot(0);
+        if (transactions.putIfAbsent(transaction.getId(), snapshot) != null)
+            throw new IllegalStateException("Duplicate transaction ID: " + transaction.getId());
+        if (listener != null)
+            listener.submitted(snapshot);
         return transaction;
     }
 
+    // Weakly consistent: transactions moving to the history while iterating may be missed or returned twice,
+    // a snapshot gets them from the journal written after its position.
+    static Iterable<Transaction> values() {
+        return () -> new Iterator<Transaction>() {
+
+            private Iterator<Transaction> current = transactions.values().iterator();
+
+            private boolean pending = true;
+
+            @Override
+            public boolean hasNext() {
+                if (pending && !current.hasNext()) {
+                    current = history.values().iterator();
+                    pending = false;
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return current.next();
+            }
+
+        };
+    }
+
+    public void restore(Transaction entity) {
+        boolean completed = TransactionHistory.accepts(entity);
+        transactions.compute(entity.getId(), (id, current) -> {
+            if (current != null)
+                unindex(current);
+            if (completed) {
+                history.put(entity.snapshot(current == null ? 0 : current.getVersion() + 1), null);
+                return null;
+            }
+            Transaction removed = history.remove(id, null);
+            Transaction previous = current != null ? current : removed;
+            Transaction snapshot = entity.snapshot(previous == null ? 0 : previous.getVersion() + 1);
+            index(snapshot);
+            return snapshot;
+        });
+    }
+
+    private static void index(Transaction transaction) {
+        IndexKey key = new IndexKey(transaction);
+        for (Account account : involvedAccounts(transaction))
+            accountIndex.computeIfAbsent(account.getId(), id -> new ConcurrentSkipListMap<>())
+                    .put(key, transaction);
+    }
+
+    private static void unindex(Transaction transaction) {
+        IndexKey key = new IndexKey(transaction);
+        for (Account account : involvedAccounts(transaction)) {
+            ConcurrentNavigableMap<IndexKey, Transaction> index = accountIndex.get(account.getId());
+            if (index != null)
+                index.remove(key);
+        }
+    }
+
+    private static List<Account> involvedAccounts(Transaction transaction) {
+        List<Account> accounts = new ArrayList<>(2);
+        if (transaction.getSourceAccount() != null)
+            accounts.add(transaction.getSourceAccount());
+        if (transaction.getDestinationAccount() != null)
+            accounts.add(transaction.getDestinationAccount());
+        return accounts;
+    }
+
+    private static final class IndexKey implements Comparable<IndexKey> {
+
+        private final LocalDateTime creationDateTime;
+
+        private final String id;
+
+        private IndexKey(Transaction transaction) {
+            this(transaction.getCreationDateTime(), transaction.getId());
+        }
+
+        private IndexKey(LocalDateTime creationDateTime, String id) {
+            this.creationDateTime = creationDateTime;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int result = creationDateTime.compareTo(other.creationDateTime);
+            return result != 0 ? result : id.compareTo(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IndexKey key = (IndexKey) o;
+            return creationDateTime.equals(key.creationDateTime) && id.equals(key.id);
+        }
+
+    }
+
 }
@@ -1,18 +1,57 @@
 package com.ulanm.moneytransfer.dao.impl;
 
+import com.ulanm.moneytransfer.dao.ChangeListener;
 import com.ulanm.moneytransfer.dao.UserDAO;
 import com.ulanm.moneytransfer.model.impl.User;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 public class UserInMemoryDAO implements UserDAO {
 
-    private static final Map<String, User> users = new ConcurrentHashMap<>();
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int MIN_GRAM_LENGTH = 2;
+
+    // marks the start of a name, so that grams starting with it match prefixes
+    private static final char START = '\u0001';
+
+    private static final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+
+    // the same users ordered by ID for paging, updated within the atomic update of the user
+    private static final ConcurrentNavigableMap<String, User> ordered = new ConcurrentSkipListMap<>();
+
+    /*
+     * Inverted index of lower case names: IDs of users by every substring of 2 to 3 characters of their
+     * name preceded by START. A query of 2 or 3 characters, or a prefix of 1 to 2, is a gram itself, so
+     * its set holds exactly the matching users. Longer queries are looked up in the smallest set of their
+     * 3 characters long grams and checked against the name. Single characters are not indexed, as their
+     * sets would hold nearly every user. A substring of 1 character is looked for by walking the users in
+     * ID order up to the limit, which takes about limit users for a common character and the whole walk
+     * only for a rare one. Sets are ordered by ID, so results are in ID order, which is creation order
+     * only with time-ordered IDs.
+     */
+    private static final Map<String, NavigableSet<String>> nameIndex = new ConcurrentHashMap<>();
+
+    private static final Map<String, String> indexedNames = new ConcurrentHashMap<>();
+
+    private final ChangeListener<User> listener;
+
+    public UserInMemoryDAO() {
+        this(null);
+    }
+
+    public UserInMemoryDAO(ChangeListener<User> listener) {
+        this.listener = listener;
+    }
 
     @Override
     public List<User> getAll() {
-        return Collections.synchronizedList(new ArrayList<>(users.values()));
+        return Collections.synchronizedList(new ArrayList<>(ordered.values()));
     }
 
     @Override
@@ -20,37 +59,142 @@ public class UserInMemoryDAO implements UserDAO {
         return users.get(id);
     }
 
+    @Override
+    public List<User> getPage(String afterId, int limit) {
+        Collection<User> tail = afterId == null ? ordered.values() : ordered.tailMap(afterId, false).values();
+        List<User> page = new ArrayList<>(limit);
+        Iterator<User> iterator = tail.iterator();
+        while (page.size() < limit && iterator.hasNext())
+            page.add(iterator.next());
+        return page;
+    }
+
     @Override
     public boolean submit(User entity) {
-        synchronized (users) {
-            if (users.get(entity.getId()) == entity)
-                return true;
-            if (users.get(entity.getId()) == null)
-                return false;
-            users.put(entity.getId(), entity);
-            return users.get(entity.getId()) == entity;
-        }
+        User[] stored = new User[1];
+        users.computeIfPresent(entity.getId(), (id, current) -> {
+            stored[0] = entity.snapshot(current.getVersion() + 1);
+            ordered.put(id, stored[0]);
+            if (listener != null)
+                listener.submitted(stored[0]);
+            return stored[0];
+        });
+        if (stored[0] == null)
+            return false;
+        index(entity.getId());
+        return true;
     }
 
     @Override
     public boolean delete(User entity) {
-        synchronized (users) {
-            users.remove(entity.getId());
-            return users.get(entity.getId()) == null;
-        }
+        users.computeIfPresent(entity.getId(), (id, current) -> {
+            ordered.remove(id);
+            if (listener != null)
+                listener.deleted(id);
+            return null;
+        });
+        index(entity.getId());
+        return users.get(entity.getId()) == null;
     }
 
     @Override
     public User create() {
-        User user;
-        String id;
-        synchronized (users) {
-            do id = UUID.randomUUID().toString();
-            while (users.get(id) != null);
-            user = new User(id);
-            users.put(id, user);
-        }
+        User user = new User(InMemoryBundleDAO.nextId());
+        User snapshot = user.snapshot(0);
+        if (users.putIfAbsent(user.getId(), snapshot) != null)
+            throw new IllegalStateException("Duplicate user ID: " + user.getId());
+        ordered.put(user.getId(), snapshot);
+        if (listener != null)
+            listener.submitted(snapshot);
         return user;
     }
 
+    static Collection<User> values() {
+        return Collections.unmodifiableCollection(ordered.values());
+    }
+
+    public void restore(User entity) {
+        users.compute(entity.getId(), (id, current) -> {
+            User snapshot = entity.snapshot(current == null ? 0 : current.getVersion() + 1);
+            ordered.put(id, snapshot);
+            return snapshot;
+        });
+        index(entity.getId());
+    }
+
+    @Override
+    public List<User> findByName(String name, boolean prefix, int limit) {
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        String query = prefix ? START + lowerCase : lowerCase;
+        Iterable<String> candidates = query.length() < MIN_GRAM_LENGTH ? ordered.keySet() : smallestGramSet(query);
+        List<User> result = new ArrayList<>();
+        for (String id : candidates) {
+            if (result.size() >= limit)
+                break;
+            String indexed = indexedNames.get(id);
+            if (indexed == null || !(prefix ? indexed.startsWith(lowerCase) : indexed.contains(lowerCase)))
+                continue;
+            User user = users.get(id);
+            if (user != null)
+                result.add(user);
+        }
+        return result;
+    }
+
+    private static Iterable<String> smallestGramSet(String query) {
+        NavigableSet<String> smallest = null;
+        Set<String> grams = query.length() <= GRAM_LENGTH ? Collections.singleton(query) : grams(query, GRAM_LENGTH);
+        for (String gram : grams) {
+            NavigableSet<String> ids = nameIndex.get(gram);
+            if (ids == null)
+                return Collections.emptySet();
+            if (smallest == null || ids.size() < smallest.size())
+                smallest = ids;
+        }
+        return smallest;
+    }
+
+    // Brings the index of the user up to date with the stored user, changes of a user are indexed one at a time.
+    private static void index(String id) {
+        indexedNames.compute(id, (key, previous) -> {
+            User user = users.get(id);
+            String name = user == null || user.getName() == null ? null : user.getName().toLowerCase(Locale.ROOT);
+            if (Objects.equals(name, previous))
+                return previous;
+            if (previous != null) {
+                for (String gram : indexedGrams(START + previous)) {
+                    nameIndex.computeIfPresent(gram, (g, ids) -> {
+                        ids.remove(id);
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+            }
+            if (name != null) {
+                for (String gram : indexedGrams(START + name)) {
+                    nameIndex.compute(gram, (g, ids) -> {
+                        if (ids == null)
+                            ids = new ConcurrentSkipListSet<>();
+                        ids.add(id);
+                        return ids;
+                    });
+                }
+            }
+            return name;
+        });
+    }
+
+    private static Set<String> indexedGrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int length = MIN_GRAM_LENGTH; length <= GRAM_LENGTH; length++)
+            grams.addAll(grams(text, length));
+        return grams;
+    }
+
+    private static Set<String> grams(String text, int length) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + length <= text.length(); i++)
+            grams.add(text.substring(i, i + length));
+        return grams;
+    }
+
 }
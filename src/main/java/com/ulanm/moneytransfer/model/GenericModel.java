@@ -4,4 +4,10 @@ public interface GenericModel extends Cloneable {
 
     String getId();
 
+    // Number of times the entity was stored before, a copy made with clone() keeps the version it was made from.
+    long getVersion();
+
+    // Unmodifiable copy which is stored as the given version and shared by all readers.
+    GenericModel snapshot(long version);
+
 }
@@ -1,5 +1,6 @@
 package com.ulanm.moneytransfer.model.impl;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.ulanm.moneytransfer.model.GenericModel;
 
 import java.math.BigDecimal;
@@ -11,22 +12,22 @@ import java.util.UUID;
 
 public class Account implements GenericModel {
 
-    public static final Account EXTERNAL = new Account("00000000-0000-0000-0000-000000000000");
-
-    static {
-        EXTERNAL.setActive(true);
-        EXTERNAL.setName("Account for deposit and withdrawal");
-    }
+    public static final Account EXTERNAL = external();
 
     private final String id;
 
+    private long version;
+
+    // set on the copies the DAO stores, which are read without locking and must never change
+    private boolean snapshot;
+
     private User owner;
 
     private String name;
 
     private LocalDateTime creationDateTime;
 
-    private BigDecimal balance;
+    private long balance;
 
     private Currency currency;
 
@@ -37,16 +38,33 @@ public class Account implements GenericModel {
     }
 
     public Account(String id) {
+        this(id, LocalDateTime.now());
+    }
+
+    public Account(String id, LocalDateTime creationDateTime) {
         this.id = id;
-        creationDateTime = LocalDateTime.now();
+        this.creationDateTime = creationDateTime;
         active = false;
     }
 
+    private static Account external() {
+        Account account = new Account("00000000-0000-0000-0000-000000000000");
+        account.setActive(true);
+        account.setName("Account for deposit and withdrawal");
+        return account.snapshot(0);
+    }
+
     @Override
     public String getId() {
         return id;
     }
 
+    @Override
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
     public LocalDateTime getCreationDateTime() {
         return creationDateTime;
     }
@@ -56,6 +74,7 @@ public class Account implements GenericModel {
     }
 
     public void setOwner(User owner) {
+        checkModifiable();
         this.owner = owner;
     }
 
@@ -64,6 +83,7 @@ public class Account implements GenericModel {
     }
 
     public void setName(String name) {
+        checkModifiable();
         this.name = name;
     }
 
@@ -72,18 +92,33 @@ public class Account implements GenericModel {
     }
 
     public void setCurrency(Currency currency) {
+        checkModifiable();
         this.currency = currency;
     }
 
     public BigDecimal getBalance() {
-        return balance;
+        return currency == null ? null : Money.toDecimal(balance, currency);
     }
 
     public void setBalance(BigDecimal balance) {
+        checkModifiable();
+        if (currency == null)
+            throw new IllegalStateException("Currency must be set before balance.");
+        this.balance = Money.toUnits(balance, currency);
+    }
+
+    @JsonIgnore
+    public long getBalanceUnits() {
+        return balance;
+    }
+
+    public void setBalanceUnits(long balance) {
+        checkModifiable();
         this.balance = balance;
     }
 
     public void setActive(boolean active) {
+        checkModifiable();
         this.active = active;
     }
 
@@ -116,11 +151,24 @@ public class Account implements GenericModel {
                 "\tID: " + id + ",\n" +
                 "\tName: " + name + ",\n" +
                 "\tOwned by: " + owner.getName() + ",\n" +
-                "\tCurrent balance: " + balance.toPlainString() + " " + currency.getCurrencyCode() + ",\n" +
+                "\tCurrent balance: " + getBalance().toPlainString() + " " + currency.getCurrencyCode() + ",\n" +
                 "\tCreated at: " + creationDateTime.format(formatter) + "\n" +
                 "}\n";
     }
 
+    @Override
+    public Account snapshot(long version) {
+        Account snapshot = clone();
+        snapshot.version = version;
+        snapshot.snapshot = true;
+        return snapshot;
+    }
+
+    private void checkModifiable() {
+        if (snapshot)
+            throw new IllegalStateException("Stored account cannot be modified, modify a copy made with clone().");
+    }
+
     @Override
     public Account clone() {
         try {super.clone();}
@@ -129,6 +177,7 @@ public class Account implements GenericModel {
         clone.owner = this.owner;
         clone.name = this.name;
         clone.creationDateTime = this.creationDateTime;
+        clone.version = this.version;
         clone.balance = this.balance;
         clone.currency = this.currency;
         clone.active = this.active;
@@ -0,0 +1,58 @@
+package com.ulanm.moneytransfer.model.impl;
+
+public class LockMetrics {
+
+    private final int stripes;
+
+    private final int locked;
+
+    private final long acquired;
+
+    private final long contended;
+
+    private final long timedOut;
+
+    private final long totalWaitMicros;
+
+    private final long maxWaitMicros;
+
+    public LockMetrics(int stripes, int locked, long acquired, long contended, long timedOut,
+                       long totalWaitMicros, long maxWaitMicros) {
+        this.stripes = stripes;
+        this.locked = locked;
+        this.acquired = acquired;
+        this.contended = contended;
+        this.timedOut = timedOut;
+        this.totalWaitMicros = totalWaitMicros;
+        this.maxWaitMicros = maxWaitMicros;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public int getLocked() {
+        return locked;
+    }
+
+    public long getAcquired() {
+        return acquired;
+    }
+
+    public long getContended() {
+        return contended;
+    }
+
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    public long getTotalWaitMicros() {
+        return totalWaitMicros;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitMicros;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.ulanm.moneytransfer.model.impl;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+public final class Money {
+
+    private Money() {}
+
+    public static long toUnits(BigDecimal value, Currency currency) throws ArithmeticException {
+        return value.movePointRight(fractionDigits(currency)).longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long units, Currency currency) {
+        return BigDecimal.valueOf(units, fractionDigits(currency));
+    }
+
+    private static int fractionDigits(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+
+}
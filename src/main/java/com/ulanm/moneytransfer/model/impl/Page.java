@@ -0,0 +1,28 @@
+package com.ulanm.moneytransfer.model.impl;
+
+import java.util.List;
+
+public class Page<T> {
+
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+}
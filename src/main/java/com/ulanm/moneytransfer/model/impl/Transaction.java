@@ -1,5 +1,6 @@
 package com.ulanm.moneytransfer.model.impl;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.ulanm.moneytransfer.model.GenericModel;
 
 import java.math.BigDecimal;
@@ -13,11 +14,15 @@ public class Transaction implements GenericModel {
 
     private final String id;
 
+    private long version;
+
+    private boolean snapshot;
+
     private Account sourceAccount;
 
     private Account destinationAccount;
 
-    private BigDecimal amount;
+    private long amount;
 
     private Currency currency;
 
@@ -34,8 +39,12 @@ public class Transaction implements GenericModel {
     }
 
     public Transaction(String id) {
+        this(id, LocalDateTime.now());
+    }
+
+    public Transaction(String id, LocalDateTime creationDateTime) {
         this.id = id;
-        creationDateTime = LocalDateTime.now();
+        this.creationDateTime = creationDateTime;
         status = TransactionStatus.CREATED;
     }
 
@@ -44,11 +53,18 @@ public class Transaction implements GenericModel {
         return id;
     }
 
+    @Override
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
     public Account getSourceAccount() {
         return sourceAccount;
     }
 
     public void setSourceAccount(Account sourceAccount) {
+        checkModifiable();
         this.sourceAccount = sourceAccount;
     }
 
@@ -57,14 +73,28 @@ public class Transaction implements GenericModel {
     }
 
     public void setDestinationAccount(Account destinationAccount) {
+        checkModifiable();
         this.destinationAccount = destinationAccount;
     }
 
     public BigDecimal getAmount() {
-        return amount;
+        return currency == null ? null : Money.toDecimal(amount, currency);
     }
 
     public void setAmount(BigDecimal amount) {
+        checkModifiable();
+        if (currency == null)
+            throw new IllegalStateException("Currency must be set before amount.");
+        this.amount = Money.toUnits(amount, currency);
+    }
+
+    @JsonIgnore
+    public long getAmountUnits() {
+        return amount;
+    }
+
+    public void setAmountUnits(long amount) {
+        checkModifiable();
         this.amount = amount;
     }
 
@@ -73,6 +103,7 @@ public class Transaction implements GenericModel {
     }
 
     public void setCurrency(Currency currency) {
+        checkModifiable();
         this.currency = currency;
     }
 
@@ -81,6 +112,7 @@ public class Transaction implements GenericModel {
     }
 
     public void setComment(String comment) {
+        checkModifiable();
         this.comment = comment;
     }
 
@@ -89,6 +121,7 @@ public class Transaction implements GenericModel {
     }
 
     public void setStatus(TransactionStatus status) {
+        checkModifiable();
         this.status = status;
     }
 
@@ -101,6 +134,7 @@ public class Transaction implements GenericModel {
     }
 
     public void setExecutionDateTime(LocalDateTime executionDateTime) {
+        checkModifiable();
         this.executionDateTime = executionDateTime;
     }
 
@@ -149,7 +183,7 @@ public class Transaction implements GenericModel {
                 "\tID: " + id + ",\n" +
                 "\tFrom: " + sourceAccount.getName() + " of " + sourceAccount.getOwner().getName() + ",\n" +
                 "\tTo: " + destinationAccount.getName() + " of " + destinationAccount.getOwner().getName() + ",\n" +
-                "\tAmount: " + amount.toPlainString() + " " + currency.getCurrencyCode() + ",\n" +
+                "\tAmount: " + getAmount().toPlainString() + " " + currency.getCurrencyCode() + ",\n" +
                 "\tComment: " + comment + ",\n" +
                 "\tStatus: " + status.toString() + ",\n" +
                 "\tCreated at: " + creationDateTime.format(formatter) + "\n" +
@@ -157,6 +191,19 @@ public class Transaction implements GenericModel {
                 "}\n";
     }
 
+    @Override
+    public Transaction snapshot(long version) {
+        Transaction snapshot = clone();
+        snapshot.version = version;
+        snapshot.snapshot = true;
+        return snapshot;
+    }
+
+    private void checkModifiable() {
+        if (snapshot)
+            throw new IllegalStateException("Stored transaction cannot be modified, modify a copy made with clone().");
+    }
+
     @Override
     public Transaction clone() {
         try {super.clone();}
@@ -169,6 +216,7 @@ public class Transaction implements GenericModel {
         clone.comment = this.comment;
         clone.status = this.status;
         clone.creationDateTime = this.creationDateTime;
+        clone.version = this.version;
         clone.executionDateTime = this.executionDateTime;
         return clone;
     }
@@ -0,0 +1,29 @@
+package com.ulanm.moneytransfer.model.impl;
+
+public class TransferResult {
+
+    private final int statusCode;
+
+    private final String statusMessage;
+
+    private final Transaction transaction;
+
+    public TransferResult(int statusCode, String statusMessage, Transaction transaction) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.transaction = transaction;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.ulanm.moneytransfer.model.impl;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.ulanm.moneytransfer.model.GenericModel;
 
 import java.time.LocalDateTime;
@@ -11,6 +12,10 @@ public class User implements GenericModel {
 
     private final String id;
 
+    private long version;
+
+    private boolean snapshot;
+
     private String name;
 
     private LocalDateTime creationDateTime;
@@ -20,8 +25,12 @@ public class User implements GenericModel {
     }
 
     public User(String id) {
+        this(id, LocalDateTime.now());
+    }
+
+    public User(String id, LocalDateTime creationDateTime) {
         this.id = id;
-        creationDateTime = LocalDateTime.now();
+        this.creationDateTime = creationDateTime;
     }
 
     @Override
@@ -29,11 +38,18 @@ public class User implements GenericModel {
         return id;
     }
 
+    @Override
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
     public String getName() {
         return name;
     }
 
     public void setName(String name) {
+        checkModifiable();
         this.name = name;
     }
 
@@ -66,6 +82,19 @@ public class User implements GenericModel {
                 "}\n";
     }
 
+    @Override
+    public User snapshot(long version) {
+        User snapshot = clone();
+        snapshot.version = version;
+        snapshot.snapshot = true;
+        return snapshot;
+    }
+
+    private void checkModifiable() {
+        if (snapshot)
+            throw new IllegalStateException("Stored user cannot be modified, modify a copy made with clone().");
+    }
+
     @Override
     public User clone() {
         try {super.clone();}
@@ -73,6 +102,7 @@ public class User implements GenericModel {
         User clone = new User(this.id);
         clone.name = this.name;
         clone.creationDateTime = this.creationDateTime;
+        clone.version = this.version;
         return clone;
     }
 
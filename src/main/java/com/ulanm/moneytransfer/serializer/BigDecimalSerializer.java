@@ -6,12 +6,18 @@ import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.util.Currency;
+import java.math.RoundingMode;
 
 public class BigDecimalSerializer extends StdSerializer<BigDecimal> {
 
-    private static final DecimalFormat df = new DecimalFormat("#.00");
+    private static final int SCALE = 2;
+
+    private static final int MAX_LONG_PRECISION = 18;
+
+    private static final int MAX_LENGTH = 21;
+
+    // the generator copies the characters, so each thread can keep reusing one buffer
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
 
     public BigDecimalSerializer() {
         this(null);
@@ -23,7 +29,44 @@ public class BigDecimalSerializer extends StdSerializer<BigDecimal> {
 
     @Override
     public void serialize(BigDecimal bigDecimal, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
-        jsonGenerator.writeString(df.format(bigDecimal));
+        // amounts of two-decimal currencies already have the scale and are written as they are
+        BigDecimal scaled = bigDecimal.scale() == SCALE ? bigDecimal : bigDecimal.setScale(SCALE, RoundingMode.HALF_EVEN);
+        if (scaled.precision() > MAX_LONG_PRECISION) {
+            jsonGenerator.writeString(format(scaled, bigDecimal.signum() < 0));
+            return;
+        }
+        char[] buffer = BUFFER.get();
+        int offset = format(scaled.unscaledValue().longValue(), bigDecimal.signum() < 0, buffer);
+        jsonGenerator.writeString(buffer, offset, MAX_LENGTH - offset);
+    }
+
+    /*
+     * Writes the "#.00" representation of the given amount of minor units to the end of the buffer
+     * and returns the offset of its first character. Like DecimalFormat, the integer part is omitted
+     * when it is zero and the sign is kept for negative amounts rounded to zero.
+     */
+    static int format(long units, boolean negative, char[] buffer) {
+        long remainder = Math.abs(units);
+        int position = buffer.length;
+        for (int i = 0; i < SCALE; i++) {
+            buffer[--position] = (char) ('0' + remainder % 10);
+            remainder /= 10;
+        }
+        buffer[--position] = '.';
+        while (remainder > 0) {
+            buffer[--position] = (char) ('0' + remainder % 10);
+            remainder /= 10;
+        }
+        if (negative)
+            buffer[--position] = '-';
+        return position;
+    }
+
+    private static String format(BigDecimal scaled, boolean negative) {
+        String digits = scaled.abs().toPlainString();
+        if (digits.startsWith("0."))
+            digits = digits.substring(1);
+        return negative ? "-" + digits : digits;
     }
 
 }
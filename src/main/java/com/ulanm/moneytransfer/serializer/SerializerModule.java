@@ -0,0 +1,22 @@
+package com.ulanm.moneytransfer.serializer;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.math.BigDecimal;
+import java.time.*;
+import java.util.Currency;
+
+public class SerializerModule extends SimpleModule {
+
+    public SerializerModule() {
+        addSerializer(LocalDateTime.class, new DateTimeSerializer());
+        addSerializer(LocalDate.class, new DateTimeSerializer());
+        addSerializer(LocalTime.class, new DateTimeSerializer());
+        addSerializer(OffsetDateTime.class, new DateTimeSerializer());
+        addSerializer(OffsetTime.class, new DateTimeSerializer());
+        addSerializer(ZonedDateTime.class, new DateTimeSerializer());
+        addSerializer(Currency.class, new CurrencySerializer());
+        addSerializer(BigDecimal.class, new BigDecimalSerializer());
+    }
+
+}
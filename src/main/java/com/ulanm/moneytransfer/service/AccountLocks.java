@@ -0,0 +1,130 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.LockMetrics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Locks accounts by id, so that every request changing an account excludes the others no matter
+ * which copy of the account it holds. Ids are hashed onto a fixed set of locks which are always
+ * taken in ascending order, a lock that cannot be taken within the timeout fails the request.
+ */
+public class AccountLocks {
+
+    public static final int STRIPES = 1024;
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private static final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new ReentrantLock();
+    }
+
+    private static volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+
+    private static final LongAdder acquired = new LongAdder();
+
+    private static final LongAdder contended = new LongAdder();
+
+    private static final LongAdder timedOut = new LongAdder();
+
+    private static final LongAdder waitNanos = new LongAdder();
+
+    private static final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public interface LockedCall<T> {
+        T call() throws ServiceException;
+    }
+
+    public static void setTimeout(long millis) {
+        timeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public static LockMetrics getMetrics() {
+        int locked = 0;
+        for (ReentrantLock lock : locks) {
+            if (lock.isLocked())
+                locked++;
+        }
+        return new LockMetrics(
+                STRIPES,
+                locked,
+                acquired.sum(),
+                contended.sum(),
+                timedOut.sum(),
+                TimeUnit.NANOSECONDS.toMicros(waitNanos.sum()),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get())
+        );
+    }
+
+    static <T> T withLock(String accountId, LockedCall<T> call) throws ServiceException {
+        return withLocks(Collections.singletonList(accountId), call);
+    }
+
+    // The external account is never changed, so it is not locked.
+    static <T> T withLocks(Collection<String> accountIds, LockedCall<T> call) throws ServiceException {
+        int[] stripes = new int[accountIds.size()];
+        int count = 0;
+        for (String id : accountIds) {
+            if (!id.equals(Account.EXTERNAL.getId()))
+                stripes[count++] = stripe(id);
+        }
+        Arrays.sort(stripes, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || stripes[unique - 1] != stripes[i])
+                stripes[unique++] = stripes[i];
+        }
+        int held = 0;
+        try {
+            for (; held < unique; held++)
+                acquire(locks[stripes[held]]);
+            return call.call();
+        }
+        finally {
+            for (int i = held - 1; i >= 0; i--)
+                locks[stripes[i]].unlock();
+        }
+    }
+
+    private static void acquire(ReentrantLock lock) throws ServiceException {
+        if (!lock.tryLock()) {
+            contended.increment();
+            long start = System.nanoTime();
+            boolean success;
+            try {
+                success = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                success = false;
+            }
+            long waited = System.nanoTime() - start;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+            if (!success) {
+                timedOut.increment();
+                throw new ServiceException()
+                        .withStatusCode(503)
+                        .withStatusMessage("Account is busy, please try again.");
+            }
+        }
+        acquired.increment();
+    }
+
+    private static int stripe(String accountId) {
+        int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+}
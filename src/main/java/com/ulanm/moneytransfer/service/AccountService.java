@@ -5,22 +5,27 @@ import com.ulanm.moneytransfer.exception.ServiceException;
 import com.ulanm.moneytransfer.model.impl.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class AccountService {
 
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
     public static Account getAccountById(String id) throws ServiceException {
         if (id == null || id.trim().equals(""))
             throw new ServiceException()
                     .withStatusCode(400)
                     .withStatusMessage("Account ID cannot be empty.");
         Account account = Application.dao.getAccountDAO().getById(id);
-        if (account != null) {
-            synchronized (account) {
-                return account.clone();
-            }
-        }
+        if (account != null)
+            return account;
         else
             throw new ServiceException()
                     .withStatusCode(404)
@@ -28,35 +33,20 @@ public class AccountService {
     }
 
     public static Account activateAccount(Account account) throws ServiceException {
-        boolean success;
-        Account result;
-        synchronized (account) {
-            account.setActive(true);
-            success = Application.dao.getAccountDAO().submit(account);
-            result = account.clone();
-        }
-        if (success)
-            return result;
-        else
-            throw new ServiceException()
-                    .withStatusCode(500)
-                    .withStatusMessage("An error occurred, please try again.");
+        return setActive(account.getId(), true);
     }
 
     public static Account deactivateAccount(Account account) throws ServiceException {
-        boolean success;
-        Account result;
-        synchronized (account) {
-            account.setActive(false);
-            success = Application.dao.getAccountDAO().submit(account);
-            result = account.clone();
-        }
-        if (success)
-            return result;
-        else
-            throw new ServiceException()
-                    .withStatusCode(500)
-                    .withStatusMessage("An error occurred, please try again.");
+        return setActive(account.getId(), false);
+    }
+
+    private static Account setActive(String id, boolean active) throws ServiceException {
+        return TransferService.withAccount(id, () -> {
+            Account current = getAccountById(id);
+            Account account = current.clone();
+            account.setActive(active);
+            return submit(account, current.getVersion());
+        });
     }
 
     public static Account activateAccount(String id) throws ServiceException {
@@ -68,6 +58,15 @@ public class AccountService {
     }
 
     public static Account updateAccount(Account account, AccountDTO newData) throws ServiceException {
+        return updateAccount(account, newData, null);
+    }
+
+    /*
+     * Updates the account if it is still of the expected version, or whatever version it is when the
+     * expected version is null. An update of an outdated version fails with 409 without waiting.
+     */
+    public static Account updateAccount(Account account, AccountDTO newData, Long expectedVersion)
+            throws ServiceException {
 
         String name;
         User owner;
@@ -124,23 +123,23 @@ public class AccountService {
                     .withStatusCode(400)
                     .withStatusMessage("Active flag cannot be null.");
 
-        boolean success;
-        Account result;
-        synchronized (account) {
-            account.setOwner(owner);
-            account.setName(name);
-            account.setCurrency(currency);
-            account.setBalance(balance);
-            account.setActive(active);
-            success = Application.dao.getAccountDAO().submit(account);
-            result = account.clone();
-        }
-        if (success)
-            return result;
-        else
-            throw new ServiceException()
-                    .withStatusCode(500)
-                    .withStatusMessage("An error occurred, please try again.");
+        long balanceUnits = Amounts.toUnits(balance, currency, "Balance");
+
+        if (expectedVersion != null)
+            checkVersion(getAccountById(account.getId()), expectedVersion);
+
+        return TransferService.withAccount(account.getId(), () -> {
+            Account current = getAccountById(account.getId());
+            if (expectedVersion != null)
+                checkVersion(current, expectedVersion);
+            Account updated = current.clone();
+            updated.setOwner(owner);
+            updated.setName(name);
+            updated.setCurrency(currency);
+            updated.setBalanceUnits(balanceUnits);
+            updated.setActive(active);
+            return submit(updated, current.getVersion());
+        });
 
     }
 
@@ -148,11 +147,30 @@ public class AccountService {
         return updateAccount(getAccountById(id), newData);
     }
 
+    public static Account updateAccount(String id, AccountDTO newData, Long expectedVersion) throws ServiceException {
+        return updateAccount(getAccountById(id), newData, expectedVersion);
+    }
+
+    private static void checkVersion(Account account, long expectedVersion) throws ServiceException {
+        if (account.getVersion() != expectedVersion)
+            throw new ServiceException()
+                    .withStatusCode(409)
+                    .withStatusMessage("Account was changed by another request, please reload it and try again.");
+    }
+
+    // Stores the account changed while it was held by this request and returns what was stored.
+    private static Account submit(Account account, long version) throws ServiceException {
+        Account stored = Application.dao.getAccountDAO().compareAndSubmit(account, version);
+        if (stored == null)
+            throw new ServiceException()
+                    .withStatusCode(500)
+                    .withStatusMessage("An error occurred, please try again.");
+        return stored;
+    }
+
     public static void deleteAccount(Account account) throws ServiceException {
-        boolean success;
-        synchronized (account) {
-            success = Application.dao.getAccountDAO().delete(account);
-        }
+        boolean success = TransferService.withAccount(account.getId(),
+                () -> Application.dao.getAccountDAO().delete(account));
         if (!success)
             throw new ServiceException()
                     .withStatusCode(500)
@@ -175,6 +193,14 @@ public class AccountService {
         return accounts;
     }
 
+    public static Transaction withdraw(DepositWithdrawDTO data, String idempotencyKey) throws ServiceException {
+        return IdempotencyKeys.execute(
+                idempotencyKey,
+                request("withdraw", data.getTargetAccountId(), data.getAmount()),
+                () -> withdraw(data)
+        );
+    }
+
     public static Transaction withdraw(DepositWithdrawDTO data) throws ServiceException {
 
         Account target = getAccountById(data.getTargetAccountId());
@@ -188,6 +214,14 @@ public class AccountService {
 
     }
 
+    public static Transaction deposit(DepositWithdrawDTO data, String idempotencyKey) throws ServiceException {
+        return IdempotencyKeys.execute(
+                idempotencyKey,
+                request("deposit", data.getTargetAccountId(), data.getAmount()),
+                () -> deposit(data)
+        );
+    }
+
     public static Transaction deposit(DepositWithdrawDTO data) throws ServiceException {
 
         Account target = getAccountById(data.getTargetAccountId());
@@ -201,7 +235,92 @@ public class AccountService {
 
     }
 
+    public static Transaction transfer(TransactionDTO data, String idempotencyKey) throws ServiceException {
+        return IdempotencyKeys.execute(
+                idempotencyKey,
+                request("transfer", data.getSourceAccountId(), data.getDestinationAccountId(),
+                        data.getAmount(), data.getCurrency(), data.getComment()),
+                () -> transfer(data)
+        );
+    }
+
     public static Transaction transfer(TransactionDTO data) throws ServiceException {
+        return TransferService.execute(createTransaction(data));
+    }
+
+    public static Transaction transferAsync(TransactionDTO data, String idempotencyKey) throws ServiceException {
+        return IdempotencyKeys.execute(
+                idempotencyKey,
+                request("async-transfer", data.getSourceAccountId(), data.getDestinationAccountId(),
+                        data.getAmount(), data.getCurrency(), data.getComment()),
+                () -> transferAsync(data)
+        );
+    }
+
+    // Creates the transaction and leaves its execution to the pipeline, the transaction is returned created.
+    public static Transaction transferAsync(TransactionDTO data) throws ServiceException {
+        return TransferPipeline.submit(() -> createTransaction(data));
+    }
+
+    public static List<TransferResult> transferBatch(List<TransactionDTO> data, boolean atomic) throws ServiceException {
+
+        if (data == null || data.isEmpty())
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Batch cannot be empty.");
+        if (data.size() > MAX_BATCH_SIZE)
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Batch cannot contain more than " + MAX_BATCH_SIZE + " transfers.");
+
+        List<Transaction> transactions = new ArrayList<>();
+        Map<Integer, ServiceException> rejected = new HashMap<>();
+        for (int i = 0; i < data.size(); i++) {
+            try {
+                if (data.get(i) == null)
+                    throw new ServiceException()
+                            .withStatusCode(400)
+                            .withStatusMessage("Transfer cannot be null.");
+                transactions.add(createTransaction(data.get(i)));
+            }
+            catch (ServiceException e) {
+                rejected.put(i, e);
+            }
+        }
+
+        List<TransferResult> results = new ArrayList<>();
+        Iterator<Transaction> created = transactions.iterator();
+        if (atomic && !rejected.isEmpty()) {
+            for (int i = 0; i < data.size(); i++) {
+                ServiceException e = rejected.get(i);
+                if (e != null)
+                    results.add(new TransferResult(e.getStatusCode(), e.getStatusMessage(), null));
+                else
+                    results.add(new TransferResult(409, TransferService.ROLLED_BACK, TransferService.fail(created.next())));
+            }
+            return results;
+        }
+
+        Iterator<TransferResult> executed = TransferService.executeBatch(transactions, atomic).iterator();
+        for (int i = 0; i < data.size(); i++) {
+            ServiceException e = rejected.get(i);
+            if (e != null)
+                results.add(new TransferResult(e.getStatusCode(), e.getStatusMessage(), null));
+            else
+                results.add(executed.next());
+        }
+        return results;
+
+    }
+
+    private static String request(String operation, String... parameters) {
+        StringBuilder request = new StringBuilder(operation);
+        for (String parameter : parameters)
+            request.append('\n').append(parameter);
+        return request.toString();
+    }
+
+    private static Transaction createTransaction(TransactionDTO data) throws ServiceException {
 
         Account source;
         Account destination;
@@ -252,47 +371,86 @@ public class AccountService {
                     .withStatusCode(400)
                     .withStatusMessage("Currency cannot be empty or consist only of whitespaces.");
 
+        long amountUnits = Amounts.toUnits(amount, currency, "Amount");
 
         Transaction transaction = Application.dao.getTransactionDAO().create();
-        Transaction result;
-        synchronized (transaction) {
-            transaction.setSourceAccount(source);
-            transaction.setDestinationAccount(destination);
-            transaction.setCurrency(currency);
-            transaction.setComment(data.getComment());
-            transaction.setAmount(amount);
-            TransferService.execute(transaction);
-            result = transaction.clone();
-        }
-
-        return result;
+        transaction.setSourceAccount(source);
+        transaction.setDestinationAccount(destination);
+        transaction.setCurrency(currency);
+        transaction.setComment(data.getComment());
+        transaction.setAmountUnits(amountUnits);
+        Application.dao.getTransactionDAO().submit(transaction);
+
+        return transaction;
     }
 
     public static List<Transaction> getTransactions(Account account) throws ServiceException {
-        final String id;
-        synchronized (account) {
-            id = account.getId();
-        }
-        List<Transaction> transactions = new ArrayList<>();
-        Application.dao.getTransactionDAO().getAll()
-                .forEach(transaction -> {
-                    synchronized (transaction) {
-                        if (
-                                transaction.getSourceAccount().getId().equals(id) ||
-                                transaction.getDestinationAccount().getId().equals(id)
-                        ) {
-                            transactions.add(transaction.clone());
-                        }
-                    }
-                });
-        return transactions
-                .stream()
-                .sorted(Comparator.comparing(Transaction::getCreationDateTime))
-                .collect(Collectors.toList());
+        return Application.dao.getTransactionDAO().getByAccountId(account.getId());
     }
 
     public static List<Transaction> getTransactions(String id) throws ServiceException {
         return getTransactions(getAccountById(id));
     }
 
+    public static Page<Transaction> getTransactions(String id, String from, String to, String cursor, String limit)
+            throws ServiceException {
+
+        final String accountId = getAccountById(id).getId();
+        LocalDateTime fromDateTime = parseDateTime(from);
+        LocalDateTime toDateTime = parseDateTime(to);
+        int pageSize = limit == null ? Integer.MAX_VALUE : Pagination.parseLimit(limit);
+
+        String afterId = null;
+        String position = Pagination.decodeCursor(cursor);
+        if (position != null) {
+            int separator = position.indexOf(CURSOR_SEPARATOR);
+            try {
+                fromDateTime = LocalDateTime.parse(position.substring(0, separator));
+                afterId = position.substring(separator + 1);
+            }
+            catch (DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new ServiceException()
+                        .withStatusCode(400)
+                        .withStatusMessage("Wrong cursor format.");
+            }
+        }
+
+        List<Transaction> transactions = Application.dao.getTransactionDAO()
+                .getByAccountId(
+                        accountId,
+                        fromDateTime,
+                        afterId,
+                        toDateTime,
+                        pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1
+                );
+
+        if (transactions.size() <= pageSize)
+            return new Page<>(transactions, null);
+        transactions.remove(pageSize);
+        Transaction last = transactions.get(pageSize - 1);
+        return new Page<>(
+                transactions,
+                Pagination.encodeCursor(last.getCreationDateTime() + CURSOR_SEPARATOR + last.getId())
+        );
+    }
+
+    // Transactions of the account, or of all accounts without an ID, published after the last one received.
+    public static List<TransactionFeed.Event> getTransactionEvents(String id, String lastId) throws ServiceException {
+        String accountId = id == null ? null : getAccountById(id).getId();
+        return TransactionFeed.after(lastId == null || lastId.trim().equals("") ? null : lastId.trim(), accountId);
+    }
+
+    private static LocalDateTime parseDateTime(String dateTime) throws ServiceException {
+        if (dateTime == null || dateTime.trim().equals(""))
+            return null;
+        try {
+            return LocalDateTime.parse(dateTime.trim(), DATE_TIME_FORMAT);
+        }
+        catch (DateTimeParseException e) {
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Wrong date format.");
+        }
+    }
+
 }
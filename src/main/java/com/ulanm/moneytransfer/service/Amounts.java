@@ -0,0 +1,28 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Money;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+class Amounts {
+
+    private Amounts() {}
+
+    static long toUnits(BigDecimal value, Currency currency, String name) throws ServiceException {
+        try {
+            return Money.toUnits(value, currency);
+        }
+        catch (ArithmeticException e) {
+            if (value.stripTrailingZeros().scale() > currency.getDefaultFractionDigits())
+                throw new ServiceException()
+                        .withStatusCode(400)
+                        .withStatusMessage(name + " has too many decimal places for " + currency.getCurrencyCode() + ".");
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage(name + " is too large.");
+        }
+    }
+
+}
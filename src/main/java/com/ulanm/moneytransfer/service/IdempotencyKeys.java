@@ -0,0 +1,141 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Remembers the outcome of requests sent with an Idempotency-Key header, so that a retry returns the
+ * original transaction instead of moving the money again. Keys are kept in memory for the configured
+ * time, the oldest keys are dropped first once the configured number of keys is reached.
+ *
+ * Failures caused by the server (5xx) are forgotten, so the request can be retried with the same key.
+ */
+public class IdempotencyKeys {
+
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    public static final long DEFAULT_TTL_SECONDS = 24 * 60 * 60;
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // entries in the order they were added, which is also the order they expire in
+    private static final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    private static volatile long ttlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TTL_SECONDS);
+
+    interface IdempotentCall {
+        Transaction call() throws ServiceException;
+    }
+
+    public static void configure(int maxSize, long ttlSeconds) {
+        IdempotencyKeys.maxSize = maxSize;
+        IdempotencyKeys.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /*
+     * Executes the call unless the key was used before, in which case the original result is returned.
+     * The request describes the parameters of the call, a key cannot be reused with other parameters.
+     */
+    static Transaction execute(String key, String request, IdempotentCall call) throws ServiceException {
+
+        if (key == null)
+            return call.call();
+        if (key.trim().equals(""))
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Idempotency key cannot be empty.");
+        if (key.length() > MAX_KEY_LENGTH)
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Idempotency key cannot be longer than " + MAX_KEY_LENGTH + " characters.");
+
+        long now = System.nanoTime();
+        evict(now);
+        Entry entry = new Entry(key, request, now);
+        Entry existing;
+        while ((existing = entries.putIfAbsent(key, entry)) != null && existing.isExpired(now))
+            entries.remove(key, existing);
+        if (existing != null)
+            return existing.replay(request);
+        order.offer(entry);
+
+        try {
+            Transaction result = call.call();
+            entry.result = result.clone();
+            return result;
+        }
+        catch (ServiceException e) {
+            if (e.getStatusCode() >= 500)
+                entries.remove(key, entry);
+            else
+                entry.failure = e;
+            throw e;
+        }
+        catch (RuntimeException e) {
+            entries.remove(key, entry);
+            throw e;
+        }
+
+    }
+
+    private static void evict(long now) {
+        Entry head;
+        while ((head = order.peek()) != null
+                && (head.isExpired(now) || entries.size() > maxSize || entries.get(head.key) != head)) {
+            if (order.remove(head))
+                entries.remove(head.key, head);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+
+        private final String request;
+
+        private final long created;
+
+        private volatile Transaction result;
+
+        private volatile ServiceException failure;
+
+        private Entry(String key, String request, long created) {
+            this.key = key;
+            this.request = request;
+            this.created = created;
+        }
+
+        private boolean isExpired(long now) {
+            return now - created > ttlNanos;
+        }
+
+        private Transaction replay(String request) throws ServiceException {
+            if (!this.request.equals(request))
+                throw new ServiceException()
+                        .withStatusCode(422)
+                        .withStatusMessage("Idempotency key was already used for another request.");
+            Transaction transaction = result;
+            if (transaction != null)
+                return transaction.clone();
+            ServiceException e = failure;
+            if (e != null)
+                throw new ServiceException()
+                        .withStatusCode(e.getStatusCode())
+                        .withStatusMessage(e.getStatusMessage());
+            throw new ServiceException()
+                    .withStatusCode(409)
+                    .withStatusMessage("Request with this idempotency key is in progress.");
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Applies every change on the thread of the request while it holds the locks of the accounts. A
+ * credit to a sink account is buffered, so only the lock of the source account is taken for it, and
+ * the amount is given back to the source when the sink rejects the credit.
+ */
+public class LockingTransferEngine implements TransferEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(LockingTransferEngine.class.getName());
+
+    @Override
+    public Account[] transfer(String sourceId, String destinationId, Currency currency, long amount)
+            throws ServiceException {
+        if (SinkAccounts.isSink(destinationId) && !sourceId.equals(destinationId))
+            return transferToSink(sourceId, destinationId, currency, amount);
+        return AccountLocks.withLocks(Arrays.asList(sourceId, destinationId), () -> TransferService.apply(
+                TransferService.current(sourceId),
+                TransferService.current(destinationId),
+                currency,
+                amount
+        ));
+    }
+
+    private static Account[] transferToSink(String sourceId, String destinationId, Currency currency, long amount)
+            throws ServiceException {
+        Account[] accounts = AccountLocks.withLock(sourceId, () -> {
+            Account source = TransferService.current(sourceId);
+            Account destination = AccountService.getAccountById(destinationId).clone();
+            TransferService.checkAccounts(source, destination);
+            try {
+                destination.setBalanceUnits(Math.addExact(destination.getBalanceUnits(), SinkAccounts.pending(destinationId)));
+            }
+            catch (ArithmeticException e) {
+                throw TransferService.limitExceeded();
+            }
+            TransferService.credited(destination, currency, amount);
+            if (!TransferService.isExternal(source))
+                source.setBalanceUnits(TransferService.debited(source, currency, amount));
+            if (!TransferService.store(source))
+                return null;
+            return new Account[] {source, destination};
+        });
+        if (accounts == null)
+            return null;
+        try {
+            SinkAccounts.credit(destinationId, amount);
+        }
+        catch (ServiceException e) {
+            refund(sourceId, amount);
+            throw e;
+        }
+        try {
+            accounts[1] = AccountService.getAccountById(destinationId);
+        }
+        catch (ServiceException e) {
+            // the account was deleted meanwhile, it is returned as it was checked
+        }
+        return accounts;
+    }
+
+    // Gives back an amount taken from the source for a sink credit that was rejected.
+    private static void refund(String sourceId, long amount) {
+        try {
+            AccountLocks.withLock(sourceId, () -> {
+                Account source = TransferService.current(sourceId);
+                if (!TransferService.isExternal(source)) {
+                    source.setBalanceUnits(Math.addExact(source.getBalanceUnits(), amount));
+                    if (!TransferService.store(source))
+                        LOGGER.log(Level.SEVERE, "Refund of {0} units to account {1} could not be stored.",
+                                new Object[] {amount, sourceId});
+                }
+                return null;
+            });
+        }
+        catch (ServiceException | ArithmeticException e) {
+            LOGGER.log(Level.SEVERE, "Refund of " + amount + " units to account " + sourceId + " failed.", e);
+        }
+    }
+
+    @Override
+    public <T> T withAccounts(Collection<String> accountIds, AccountLocks.LockedCall<T> call) throws ServiceException {
+        return AccountLocks.withLocks(accountIds, call);
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
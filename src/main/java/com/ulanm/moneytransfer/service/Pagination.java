@@ -0,0 +1,54 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+class Pagination {
+
+    static final int MAX_LIMIT = 1000;
+
+    private Pagination() {}
+
+    static int parseLimit(String limit) throws ServiceException {
+        if (limit == null || limit.trim().equals(""))
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Limit cannot be empty or consist only of whitespaces.");
+        final int result;
+        try {
+            result = Integer.parseInt(limit.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Wrong limit format.");
+        }
+        if (result <= 0 || result > MAX_LIMIT)
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Limit must be between 1 and " + MAX_LIMIT + ".");
+        return result;
+    }
+
+    static String encodeCursor(String position) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeCursor(String cursor) throws ServiceException {
+        if (cursor == null || cursor.trim().equals(""))
+            return null;
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Wrong cursor format.");
+        }
+    }
+
+}
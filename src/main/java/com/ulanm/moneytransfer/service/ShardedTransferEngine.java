@@ -0,0 +1,264 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+
+import java.util.Collection;
+import java.util.Currency;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Partitions accounts by id onto shards, each of which is a single thread applying the changes of
+ * its accounts one after another from a queue, so no account is ever locked. A transfer between
+ * accounts of different shards is debited on the source shard, which then hands the credit over to
+ * the destination shard; a credit that fails is refunded on the source shard.
+ *
+ * Calls that need exclusive access to some accounts pause their shards, in ascending order, and run
+ * on the thread of the request until they are done.
+ */
+public class ShardedTransferEngine implements TransferEngine {
+
+    public static final int DEFAULT_SHARDS = Runtime.getRuntime().availableProcessors();
+
+    private static final Logger LOGGER = Logger.getLogger(ShardedTransferEngine.class.getName());
+
+    private final Shard[] shards;
+
+    public ShardedTransferEngine(int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("Number of shards must be positive: " + count);
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++)
+            shards[i] = new Shard("transfer-shard-" + i);
+    }
+
+    @Override
+    public Account[] transfer(String sourceId, String destinationId, Currency currency, long amount)
+            throws ServiceException {
+
+        TransferService.checkDifferent(sourceId, destinationId);
+        Shard source = shardOf(sourceId);
+        Shard destination = shardOf(destinationId);
+        CompletableFuture<Account[]> result = new CompletableFuture<>();
+
+        if (source == null || destination == null || source == destination) {
+            (source != null ? source : destination).submit(() -> {
+                try {
+                    result.complete(TransferService.apply(
+                            TransferService.current(sourceId),
+                            TransferService.current(destinationId),
+                            currency,
+                            amount
+                    ));
+                }
+                catch (ServiceException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+        else
+            source.submit(() -> debit(source, destination, sourceId, destinationId, currency, amount, result));
+
+        // once submitted the shards may be moving the money, so the outcome is awaited even when interrupted
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof ServiceException)
+                throw (ServiceException) e.getCause();
+            throw (RuntimeException) e.getCause();
+        }
+        finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+    }
+
+    private static void debit(Shard sourceShard, Shard destinationShard, String sourceId, String destinationId,
+                              Currency currency, long amount, CompletableFuture<Account[]> result) {
+        final Account source;
+        try {
+            source = TransferService.current(sourceId);
+            TransferService.checkActive(source);
+            source.setBalanceUnits(TransferService.debited(source, currency, amount));
+            if (!TransferService.store(source)) {
+                result.complete(null);
+                return;
+            }
+        }
+        catch (ServiceException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        destinationShard.submit(() -> credit(sourceShard, source, destinationId, currency, amount, result));
+    }
+
+    private static void credit(Shard sourceShard, Account debited, String destinationId,
+                               Currency currency, long amount, CompletableFuture<Account[]> result) {
+        Throwable failure = null;
+        try {
+            Account destination = TransferService.current(destinationId);
+            TransferService.checkActive(destination);
+            destination.setBalanceUnits(TransferService.credited(destination, currency, amount));
+            if (TransferService.store(destination)) {
+                result.complete(new Account[] {debited, destination});
+                return;
+            }
+        }
+        catch (ServiceException | RuntimeException e) {
+            failure = e;
+        }
+        Throwable cause = failure;
+        sourceShard.submit(() -> refund(debited.getId(), amount, cause, result));
+    }
+
+    private static void refund(String sourceId, long amount, Throwable cause, CompletableFuture<Account[]> result) {
+        try {
+            Account source = TransferService.current(sourceId);
+            source.setBalanceUnits(Math.addExact(source.getBalanceUnits(), amount));
+            if (!TransferService.store(source))
+                LOGGER.log(Level.SEVERE, "Refund of {0} units to account {1} could not be stored.",
+                        new Object[] {amount, sourceId});
+        }
+        catch (ServiceException | ArithmeticException e) {
+            // e.g. the account was deleted while the amount was on its way, so the amount is left to be settled by hand
+            LOGGER.log(Level.SEVERE, "Refund of " + amount + " units to account " + sourceId + " failed.", e);
+        }
+        finally {
+            if (cause == null)
+                result.complete(null);
+            else
+                result.completeExceptionally(cause);
+        }
+    }
+
+    @Override
+    public <T> T withAccounts(Collection<String> accountIds, AccountLocks.LockedCall<T> call) throws ServiceException {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String id : accountIds) {
+            if (!id.equals(Account.EXTERNAL.getId()))
+                indexes.add(index(id));
+        }
+        CountDownLatch released = new CountDownLatch(1);
+        try {
+            for (int index : indexes) {
+                CountDownLatch paused = new CountDownLatch(1);
+                shards[index].submit(() -> {
+                    paused.countDown();
+                    awaitUninterruptibly(released);
+                });
+                paused.await();
+            }
+            return call.call();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException()
+                    .withStatusCode(503)
+                    .withStatusMessage("Account is busy, please try again.");
+        }
+        finally {
+            released.countDown();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private Shard shardOf(String accountId) {
+        return accountId.equals(Account.EXTERNAL.getId()) ? null : shards[index(accountId)];
+    }
+
+    int index(String accountId) {
+        int hash = accountId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards)
+            shard.stop();
+    }
+
+    private static final class Shard implements Runnable {
+
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+        private final Thread thread;
+
+        private volatile boolean running = true;
+
+        Shard(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void submit(Runnable task) {
+            queue.offer(task);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    // everything this shard changed is applied, a snapshot need not wait for it
+                    Application.dao.settle();
+                    LockSupport.park(this);
+                    continue;
+                }
+                try {
+                    task.run();
+                }
+                catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Shard task failed.", e);
+                }
+            }
+        }
+
+        void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Accounts which receive credits from many requests at once, e.g. fee or house accounts. A credit to
+ * a sink account is pushed onto a lock-free stack instead of taking the lock of the account, and the
+ * pushed credits are folded into the balance by one of the crediting requests at a time while the
+ * others park until theirs is folded. Each credit is stored before its request responds, so it is
+ * never lost with the journal, and a debit folds the pending credits first so it is checked against
+ * the full balance. A credit that would overflow the balance, or whose account is gone, is rejected
+ * so that its request can give the amount back.
+ */
+public class SinkAccounts {
+
+    private static final int PENDING = 0;
+
+    private static final int FOLDED = 1;
+
+    private static final int LIMIT_EXCEEDED = 2;
+
+    private static final int NOT_FOUND = 3;
+
+    private static volatile Map<String, Sink> sinks = Collections.emptyMap();
+
+    public static void setAccounts(Collection<String> accountIds) {
+        Map<String, Sink> accounts = new HashMap<>();
+        for (String id : accountIds)
+            accounts.put(id, new Sink());
+        sinks = accounts;
+    }
+
+    static boolean isSink(String accountId) {
+        return sinks.containsKey(accountId);
+    }
+
+    static long pending(String accountId) {
+        Sink sink = sinks.get(accountId);
+        return sink == null ? 0 : sink.pending.sum();
+    }
+
+    // Adds the amount to the account and returns once it is folded into the stored balance, throws when it was rejected.
+    static void credit(String accountId, long amount) throws ServiceException {
+        Sink sink = sinks.get(accountId);
+        Credit credit = new Credit(amount);
+        sink.push(credit);
+        // the amount is already on its way, so the outcome is awaited even when interrupted
+        boolean interrupted = false;
+        while (credit.state == PENDING) {
+            if (sink.folding.compareAndSet(false, true)) {
+                try {
+                    TransferService.withAccount(accountId, () -> {
+                        Account account = Application.dao.getAccountDAO().getById(accountId);
+                        if (account == null)
+                            complete(sink.takeAll(), NOT_FOUND);
+                        else
+                            fold(account.clone());
+                        return null;
+                    });
+                }
+                catch (ServiceException e) {
+                    // the account stayed locked too long, the credit is folded by the next attempt
+                }
+                finally {
+                    sink.folding.set(false);
+                    // credits pushed while folding were not taken, the request on top folds them next
+                    Credit next = sink.top.get();
+                    if (next != null)
+                        LockSupport.unpark(next.thread);
+                }
+            }
+            else {
+                LockSupport.park(sink);
+                interrupted |= Thread.interrupted();
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (credit.state == LIMIT_EXCEEDED)
+            throw TransferService.limitExceeded();
+        if (credit.state == NOT_FOUND)
+            throw new ServiceException()
+                    .withStatusCode(404)
+                    .withStatusMessage("No account found with ID: " + accountId);
+    }
+
+    /*
+     * Adds the pending credits to the account and stores it. The caller must have exclusive access
+     * to the account.
+     */
+    static void fold(Account account) {
+        Sink sink = sinks.get(account.getId());
+        if (sink == null)
+            return;
+        List<Credit> credits = sink.takeAll();
+        if (credits.isEmpty())
+            return;
+        long balance = account.getBalanceUnits();
+        int[] outcomes = new int[credits.size()];
+        for (int i = 0; i < outcomes.length; i++) {
+            try {
+                balance = Math.addExact(balance, credits.get(i).amount);
+                outcomes[i] = FOLDED;
+            }
+            catch (ArithmeticException e) {
+                outcomes[i] = LIMIT_EXCEEDED;
+            }
+        }
+        account.setBalanceUnits(balance);
+        boolean stored = TransferService.store(account);
+        for (int i = 0; i < outcomes.length; i++)
+            complete(credits.get(i), stored ? outcomes[i] : NOT_FOUND);
+    }
+
+    private static void complete(List<Credit> credits, int state) {
+        for (Credit credit : credits)
+            complete(credit, state);
+    }
+
+    private static void complete(Credit credit, int state) {
+        credit.state = state;
+        LockSupport.unpark(credit.thread);
+    }
+
+    private static final class Sink {
+
+        private final AtomicReference<Credit> top = new AtomicReference<>();
+
+        private final AtomicBoolean folding = new AtomicBoolean();
+
+        private final LongAdder pending = new LongAdder();
+
+        void push(Credit credit) {
+            pending.add(credit.amount);
+            Credit current;
+            do {
+                current = top.get();
+                credit.next = current;
+            }
+            while (!top.compareAndSet(current, credit));
+        }
+
+        // Takes every pushed credit, in the order they were pushed.
+        List<Credit> takeAll() {
+            List<Credit> credits = new ArrayList<>();
+            for (Credit credit = top.getAndSet(null); credit != null; credit = credit.next) {
+                pending.add(-credit.amount);
+                credits.add(credit);
+            }
+            Collections.reverse(credits);
+            return credits;
+        }
+
+    }
+
+    private static final class Credit {
+
+        private final long amount;
+
+        private final Thread thread = Thread.currentThread();
+
+        private Credit next;
+
+        private volatile int state = PENDING;
+
+        Credit(long amount) {
+            this.amount = amount;
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Transactions in the order they were executed or failed, handed to the listener as they are stored.
+ * The most recent ones are kept in a ring, so a subscriber can resume after the last transaction it
+ * received. Publishing takes the next sequence and queues an immutable copy of the transaction without
+ * locking, a single feed thread hands the queued transactions to the listener in the order of their
+ * sequences. The listener must not block.
+ */
+public class TransactionFeed {
+
+    public static final int DEFAULT_HISTORY_SIZE = 10_000;
+
+    private static final Logger LOGGER = Logger.getLogger(TransactionFeed.class.getName());
+
+    private static final Listener NO_LISTENER = event -> { };
+
+    private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static volatile AtomicReferenceArray<Event> history = new AtomicReferenceArray<>(DEFAULT_HISTORY_SIZE);
+
+    // sequence of every transaction in the history
+    private static final ConcurrentMap<String, Long> sequences = new ConcurrentHashMap<>();
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    // sequence of the last event handed to the listener, every event up to it is in the history
+    private static volatile long published;
+
+    private static final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+
+    private static final Thread thread = new Thread(TransactionFeed::run, "transaction-feed");
+
+    private static volatile Listener listener = NO_LISTENER;
+
+    static {
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public interface Listener {
+        void published(Event event);
+    }
+
+    // Called once at startup, before anything is published.
+    public static void configure(int historySize) {
+        if (historySize < 1)
+            throw new IllegalArgumentException("Feed history size must be positive: " + historySize);
+        AtomicReferenceArray<Event> previous = history;
+        AtomicReferenceArray<Event> resized = new AtomicReferenceArray<>(historySize);
+        sequences.clear();
+        long last = published;
+        for (long sequence = Math.max(1, last - Math.min(historySize, previous.length()) + 1); sequence <= last; sequence++) {
+            Event event = previous.get(index(sequence, previous));
+            resized.set(index(sequence, resized), event);
+            sequences.put(event.transaction.getId(), sequence);
+        }
+        history = resized;
+    }
+
+    public static void setListener(Listener listener) {
+        TransactionFeed.listener = listener == null ? NO_LISTENER : listener;
+    }
+
+    static void publish(Transaction transaction) {
+        Event event = new Event(sequence.incrementAndGet(), freeze(transaction));
+        AtomicReferenceArray<Event> ring = history;
+        int index = index(event.sequence, ring);
+        Event evicted;
+        do {
+            evicted = ring.get(index);
+            // a publisher that wrapped around the ring meanwhile keeps its newer event
+            if (evicted != null && evicted.sequence > event.sequence) {
+                evicted = event;
+                break;
+            }
+        }
+        while (!ring.compareAndSet(index, evicted, event));
+        if (evicted != event) {
+            if (evicted != null)
+                sequences.remove(evicted.transaction.getId(), evicted.sequence);
+            sequences.put(transaction.getId(), event.sequence);
+        }
+        queue.offer(event);
+        LockSupport.unpark(thread);
+    }
+
+    /*
+     * Transactions of the account, or of all accounts when it is null, published after the one with
+     * the given ID. Nothing is returned when there is no ID.
+     */
+    public static List<Event> after(String lastId, String accountId) throws ServiceException {
+        List<Event> events = new ArrayList<>();
+        if (lastId == null)
+            return events;
+        Long last = sequences.get(lastId);
+        if (last == null)
+            throw gone(lastId);
+        // the transaction may still be on its way to the listener, it is the next one to reach it
+        while (published < last)
+            LockSupport.parkNanos(WAIT_NANOS);
+        AtomicReferenceArray<Event> ring = history;
+        long end = published;
+        for (long sequence = last + 1; sequence <= end; sequence++) {
+            Event event = ring.get(index(sequence, ring));
+            if (event == null || event.sequence != sequence)
+                throw gone(lastId);
+            if (accountId == null || event.involves(accountId))
+                events.add(event);
+        }
+        return events;
+    }
+
+    private static void run() {
+        PriorityQueue<Event> waiting = new PriorityQueue<>(Comparator.comparingLong(Event::getSequence));
+        while (true) {
+            Event event = queue.poll();
+            if (event == null) {
+                LockSupport.park(TransactionFeed.class);
+                continue;
+            }
+            // a publisher which took an earlier sequence may not have queued its event yet
+            waiting.add(event);
+            while (!waiting.isEmpty() && waiting.peek().sequence == published + 1) {
+                Event next = waiting.poll();
+                published = next.sequence;
+                try {
+                    listener.published(next);
+                }
+                catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Feed listener failed.", e);
+                }
+            }
+        }
+    }
+
+    // The caller keeps working with its copies, so the transaction and its accounts are copied as they were stored.
+    private static Transaction freeze(Transaction transaction) {
+        Transaction copy = transaction.clone();
+        copy.setSourceAccount(freeze(transaction.getSourceAccount()));
+        copy.setDestinationAccount(freeze(transaction.getDestinationAccount()));
+        return copy.snapshot(transaction.getVersion());
+    }
+
+    private static Account freeze(Account account) {
+        return account == null || account == Account.EXTERNAL ? account : account.snapshot(account.getVersion());
+    }
+
+    private static int index(long sequence, AtomicReferenceArray<Event> ring) {
+        return (int) (sequence % ring.length());
+    }
+
+    private static ServiceException gone(String lastId) {
+        return new ServiceException()
+                .withStatusCode(410)
+                .withStatusMessage("Transaction is no longer in the feed: " + lastId);
+    }
+
+    public static final class Event {
+
+        private final long sequence;
+
+        private final Transaction transaction;
+
+        private Event(long sequence, Transaction transaction) {
+            this.sequence = sequence;
+            this.transaction = transaction;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Transaction getTransaction() {
+            return transaction;
+        }
+
+        public boolean involves(String accountId) {
+            return transaction.getSourceAccount().getId().equals(accountId)
+                    || transaction.getDestinationAccount().getId().equals(accountId);
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+
+import java.util.Collection;
+import java.util.Currency;
+
+/*
+ * Applies changes to account balances. A change either moves an amount between two accounts or is
+ * a call given exclusive access to the accounts it works on.
+ */
+public interface TransferEngine {
+
+    // Returns copies of the source and destination accounts as they were left, or null when they could not be stored.
+    Account[] transfer(String sourceId, String destinationId, Currency currency, long amount) throws ServiceException;
+
+    <T> T withAccounts(Collection<String> accountIds, AccountLocks.LockedCall<T> call) throws ServiceException;
+
+    void close();
+
+}
@@ -0,0 +1,104 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Executes transfers submitted asynchronously on threads of its own, so the request returns as soon
+ * as the transaction is created and the client polls it for the outcome. A transfer which cannot be
+ * executed is stored as failed. When the configured number of transfers are waiting, further ones are
+ * rejected before a transaction is created for them.
+ */
+public class TransferPipeline {
+
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    public static final int DEFAULT_QUEUE_SIZE = 10_000;
+
+    private static final Logger LOGGER = Logger.getLogger(TransferPipeline.class.getName());
+
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    private static volatile ExecutorService executor = createExecutor(DEFAULT_POOL_SIZE);
+
+    private static volatile int maxPending = DEFAULT_POOL_SIZE + DEFAULT_QUEUE_SIZE;
+
+    interface TransactionFactory {
+        Transaction create() throws ServiceException;
+    }
+
+    public static void configure(int poolSize, int queueSize) {
+        ExecutorService previous = executor;
+        executor = createExecutor(poolSize);
+        maxPending = poolSize + queueSize;
+        previous.shutdown();
+    }
+
+    // Waits for the transfers submitted so far to be executed.
+    public static void close() {
+        ExecutorService current = executor;
+        current.shutdown();
+        try {
+            current.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static Transaction submit(TransactionFactory factory) throws ServiceException {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            throw new ServiceException()
+                    .withStatusCode(503)
+                    .withStatusMessage("Too many transfers are waiting, please try again later.");
+        }
+        Transaction transaction;
+        try {
+            transaction = factory.create();
+        }
+        catch (ServiceException | RuntimeException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+        executor.execute(() -> execute(transaction));
+        return transaction;
+    }
+
+    private static void execute(Transaction transaction) {
+        try {
+            TransferService.execute(transaction);
+        }
+        catch (ServiceException e) {
+            // the transaction was already failed by the transfer
+        }
+        catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Transfer " + transaction.getId() + " failed.", e);
+            TransferService.fail(transaction);
+        }
+        finally {
+            Application.dao.sync();
+            pending.decrementAndGet();
+        }
+    }
+
+    private static ExecutorService createExecutor(int poolSize) {
+        AtomicInteger threads = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "transfer-pipeline-" + threads.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+}
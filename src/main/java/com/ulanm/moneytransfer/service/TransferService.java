@@ -4,17 +4,25 @@ import com.ulanm.moneytransfer.Application;
 import com.ulanm.moneytransfer.exception.ServiceException;
 import com.ulanm.moneytransfer.model.impl.Account;
 import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.TransferResult;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Currency;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 public class TransferService {
 
+    static final String ROLLED_BACK = "Batch was rolled back.";
+
+    private static volatile TransferEngine engine = new LockingTransferEngine();
+
+    public static void setEngine(TransferEngine engine) {
+        TransferService.engine = engine;
+    }
+
+    static <T> T withAccount(String accountId, AccountLocks.LockedCall<T> call) throws ServiceException {
+        return engine.withAccounts(Collections.singletonList(accountId), call);
+    }
+
     public static Transaction getTransactionById(String id) throws ServiceException {
 
         if (id == null || id.trim().equals(""))
@@ -22,11 +30,8 @@ public class TransferService {
                     .withStatusCode(400)
                     .withStatusMessage("Transaction ID cannot be empty.");
         Transaction transaction = Application.dao.getTransactionDAO().getById(id);
-        if (transaction != null) {
-            synchronized (transaction) {
-                return transaction.clone();
-            }
-        }
+        if (transaction != null)
+            return transaction;
         else
             throw new ServiceException()
                     .withStatusCode(404)
@@ -34,82 +39,239 @@ public class TransferService {
 
     }
 
+    // A rejected transfer leaves the transaction failed, so that it does not stay created.
     public static Transaction execute(Transaction transaction) throws ServiceException {
 
-        Currency currency = transaction.getCurrency();
-        Account source = transaction.getSourceAccount();
-        Account destination = transaction.getDestinationAccount();
-        BigDecimal amount = transaction.getAmount();
+        Account[] accounts;
+        try {
+            accounts = engine.transfer(
+                    transaction.getSourceAccount().getId(),
+                    transaction.getDestinationAccount().getId(),
+                    transaction.getCurrency(),
+                    transaction.getAmountUnits()
+            );
+        }
+        catch (ServiceException e) {
+            fail(transaction);
+            throw e;
+        }
 
-        if (source.equals(destination))
-            throw new ServiceException()
-                    .withStatusCode(403)
-                    .withStatusMessage("Impossible to transfer to the same account.");
+        Transaction result = transaction.clone();
+        if (accounts != null) {
+            result.setSourceAccount(accounts[0]);
+            result.setDestinationAccount(accounts[1]);
+            result.setStatus(Transaction.TransactionStatus.EXECUTED);
+            result.setExecutionDateTime(LocalDateTime.now());
+        }
+        else {
+            result.setStatus(Transaction.TransactionStatus.FAILED);
+        }
+        Application.dao.getTransactionDAO().submit(result);
+        TransactionFeed.publish(result);
 
-        if (!source.isActive() || !destination.isActive())
-            throw new ServiceException()
-                    .withStatusCode(403)
-                    .withStatusMessage("Account is not active.");
+        return result;
 
-        boolean sourceExternal = source.getId().equals(Account.EXTERNAL.getId());
-        boolean destinationExternal = destination.getId().equals(Account.EXTERNAL.getId());
+    }
 
-        List<Account> tempList = Arrays.stream(new Account[] {source, destination})
-                .sorted(Comparator.comparing(Account::getId))
-                .collect(Collectors.toList());
-        Account first = tempList.get(0);
-        Account second = tempList.get(1);
+    public static List<TransferResult> executeBatch(List<Transaction> created, boolean atomic) throws ServiceException {
 
-        boolean success;
+        List<Transaction> transactions = new ArrayList<>();
+        for (Transaction transaction : created)
+            transactions.add(transaction.clone());
 
-        synchronized (first) {
-            synchronized (second) {
-                if (!sourceExternal) {
-                    if (!source.getCurrency().equals(currency))
-                        throw new ServiceException()
-                                .withStatusCode(400)
-                                .withStatusMessage("Currencies do not match. Auto-conversion is not available.");
-                    if (source.getBalance().compareTo(amount) < 0) {
-                        throw new ServiceException()
-                                .withStatusCode(403)
-                                .withStatusMessage("Insufficient funds.");
-                    }
+        Set<String> ids = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            for (Account account : new Account[] {transaction.getSourceAccount(), transaction.getDestinationAccount()}) {
+                if (!isExternal(account))
+                    ids.add(account.getId());
+            }
+        }
+
+        List<TransferResult> results = new ArrayList<>();
+        ServiceException failure = engine.withAccounts(ids, () -> {
+            Map<String, Account> accounts = new HashMap<>();
+            for (String id : ids) {
+                Account account = Application.dao.getAccountDAO().getById(id);
+                if (account != null) {
+                    account = account.clone();
+                    SinkAccounts.fold(account);
+                    accounts.put(id, account);
                 }
-                if (!destinationExternal) {
-                    if (!destination.getCurrency().equals(currency))
+            }
+            Collection<Account> locked = accounts.values();
+            Map<String, Long> balances = new HashMap<>();
+            for (Account account : locked)
+                balances.put(account.getId(), account.getBalanceUnits());
+            for (Transaction transaction : transactions) {
+                Account source = working(accounts, transaction.getSourceAccount());
+                Account destination = working(accounts, transaction.getDestinationAccount());
+                try {
+                    if (source == null || destination == null)
                         throw new ServiceException()
-                                .withStatusCode(400)
-                                .withStatusMessage("Currencies do not match. Auto-conversion is not available.");
+                                .withStatusCode(404)
+                                .withStatusMessage("No account found with ID: " +
+                                        (source == null ? transaction.getSourceAccount() : transaction.getDestinationAccount()).getId());
+                    checkAccounts(source, destination);
+                    move(source, destination, transaction.getCurrency(), transaction.getAmountUnits());
                 }
-
-                success = true;
-                if (!sourceExternal) {
-                    source.setBalance(source.getBalance().subtract(amount));
-                    success = Application.dao.getAccountDAO().submit(source);
-                }
-                if (!destinationExternal) {
-                    destination.setBalance(destination.getBalance().add(amount));
-                    success = success && Application.dao.getAccountDAO().submit(destination);
+                catch (ServiceException e) {
+                    if (atomic) {
+                        for (Account account : locked)
+                            account.setBalanceUnits(balances.get(account.getId()));
+                        return e;
+                    }
+                    results.add(new TransferResult(e.getStatusCode(), e.getStatusMessage(), fail(transaction)));
+                    continue;
                 }
+                transaction.setSourceAccount(source.clone());
+                transaction.setDestinationAccount(destination.clone());
+                results.add(null);
+            }
+            for (Account account : locked) {
+                if (account.getBalanceUnits() != balances.get(account.getId())
+                        && !Application.dao.getAccountDAO().submit(account))
+                    return new ServiceException()
+                            .withStatusCode(500)
+                            .withStatusMessage("An error occurred, please try again.");
+            }
+            return null;
+        });
 
+        if (failure != null) {
+            int failedIndex = results.size();
+            List<TransferResult> failed = new ArrayList<>();
+            for (int i = 0; i < transactions.size(); i++) {
+                // items rejected on their own are already failed and keep their status
+                if (i < failedIndex && results.get(i) != null)
+                    failed.add(results.get(i));
+                else if (i == failedIndex || failedIndex == transactions.size())
+                    failed.add(new TransferResult(failure.getStatusCode(), failure.getStatusMessage(), fail(created.get(i))));
+                else
+                    failed.add(new TransferResult(409, ROLLED_BACK, fail(created.get(i))));
             }
+            return failed;
         }
 
-        Transaction result;
-        synchronized (transaction) {
-            if (success) {
-                transaction.setStatus(Transaction.TransactionStatus.EXECUTED);
-                transaction.setExecutionDateTime(LocalDateTime.now());
-            }
-            else {
-                transaction.setStatus(Transaction.TransactionStatus.FAILED);
-            }
+        LocalDateTime executionDateTime = LocalDateTime.now();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (results.get(i) != null)
+                continue;
+            Transaction transaction = transactions.get(i);
+            transaction.setStatus(Transaction.TransactionStatus.EXECUTED);
+            transaction.setExecutionDateTime(executionDateTime);
             Application.dao.getTransactionDAO().submit(transaction);
-            result = transaction.clone();
+            TransactionFeed.publish(transaction);
+            results.set(i, new TransferResult(200, "OK", transaction));
         }
+        return results;
 
-        return result;
+    }
+
+    public static Transaction fail(Transaction transaction) {
+        Transaction failed = transaction.clone();
+        failed.setStatus(Transaction.TransactionStatus.FAILED);
+        Application.dao.getTransactionDAO().submit(failed);
+        TransactionFeed.publish(failed);
+        return failed;
+    }
 
+    /*
+     * Moves the amount between accounts which are not changed by anyone else meanwhile and stores them.
+     * Returns the accounts as they were left, or null when they could not be stored.
+     */
+    static Account[] apply(Account source, Account destination, Currency currency, long amount) throws ServiceException {
+        checkAccounts(source, destination);
+        move(source, destination, currency, amount);
+        if (!store(source) || !store(destination))
+            return null;
+        return new Account[] {source, destination};
+    }
+
+    static boolean store(Account account) {
+        return isExternal(account) || Application.dao.getAccountDAO().submit(account);
+    }
+
+    // Reads the account again once it is locked, as the copy a request started with may be stale.
+    static Account current(String id) throws ServiceException {
+        if (id.equals(Account.EXTERNAL.getId()))
+            return Account.EXTERNAL;
+        Account account = AccountService.getAccountById(id).clone();
+        SinkAccounts.fold(account);
+        return account;
+    }
+
+    private static Account working(Map<String, Account> accounts, Account account) {
+        return isExternal(account) ? account : accounts.get(account.getId());
+    }
+
+    static boolean isExternal(Account account) {
+        return account.getId().equals(Account.EXTERNAL.getId());
+    }
+
+    static void checkAccounts(Account source, Account destination) throws ServiceException {
+        checkDifferent(source.getId(), destination.getId());
+        checkActive(source);
+        checkActive(destination);
+    }
+
+    static void checkDifferent(String sourceId, String destinationId) throws ServiceException {
+        if (sourceId.equals(destinationId))
+            throw new ServiceException()
+                    .withStatusCode(403)
+                    .withStatusMessage("Impossible to transfer to the same account.");
+    }
+
+    static void checkActive(Account account) throws ServiceException {
+        if (!account.isActive())
+            throw new ServiceException()
+                    .withStatusCode(403)
+                    .withStatusMessage("Account is not active.");
+    }
+
+    private static void move(Account source, Account destination, Currency currency, long amount) throws ServiceException {
+
+        long sourceBalance = isExternal(source) ? 0 : debited(source, currency, amount);
+        long destinationBalance = isExternal(destination) ? 0 : credited(destination, currency, amount);
+
+        if (!isExternal(source))
+            source.setBalanceUnits(sourceBalance);
+        if (!isExternal(destination))
+            destination.setBalanceUnits(destinationBalance);
+
+    }
+
+    // Returns the balance of the source account once the amount is taken from it.
+    static long debited(Account source, Currency currency, long amount) throws ServiceException {
+        checkCurrency(source, currency);
+        if (source.getBalanceUnits() < amount)
+            throw new ServiceException()
+                    .withStatusCode(403)
+                    .withStatusMessage("Insufficient funds.");
+        return source.getBalanceUnits() - amount;
+    }
+
+    // Returns the balance of the destination account once the amount is added to it.
+    static long credited(Account destination, Currency currency, long amount) throws ServiceException {
+        checkCurrency(destination, currency);
+        try {
+            return Math.addExact(destination.getBalanceUnits(), amount);
+        }
+        catch (ArithmeticException e) {
+            throw limitExceeded();
+        }
+    }
+
+    static ServiceException limitExceeded() {
+        return new ServiceException()
+                .withStatusCode(403)
+                .withStatusMessage("Balance limit exceeded.");
+    }
+
+    private static void checkCurrency(Account account, Currency currency) throws ServiceException {
+        if (!account.getCurrency().equals(currency))
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Currencies do not match. Auto-conversion is not available.");
     }
 
 }
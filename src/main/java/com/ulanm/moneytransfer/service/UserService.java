@@ -5,10 +5,8 @@ import com.ulanm.moneytransfer.exception.ServiceException;
 import com.ulanm.moneytransfer.model.impl.*;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Currency;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class UserService {
 
@@ -19,11 +17,8 @@ public class UserService {
                     .withStatusCode(400)
                     .withStatusMessage("User ID cannot be empty.");
         User user = Application.dao.getUserDAO().getById(id);
-        if (user != null) {
-            synchronized (user) {
-                return user.clone();
-            }
-        }
+        if (user != null)
+            return user;
         else
             throw new ServiceException()
                     .withStatusCode(404)
@@ -32,43 +27,49 @@ public class UserService {
     }
 
     public static List<User> getAllUsers() throws ServiceException {
-        List<User> users = new ArrayList<>();
-        Application.dao.getUserDAO().getAll()
-                .forEach(user -> {
-                    synchronized (user) {
-                        users.add(user.clone());
-                    }
-                });
-        return users;
+        return Application.dao.getUserDAO().getAll();
+    }
+
+    public static Page<User> getUsers(String cursor, String limit) throws ServiceException {
+        return getUsers(cursor, Pagination.parseLimit(limit));
+    }
+
+    public static Page<User> getUsers(String cursor, int limit) throws ServiceException {
+        String afterId = Pagination.decodeCursor(cursor);
+        List<User> users = Application.dao.getUserDAO().getPage(afterId, limit + 1);
+        if (users.size() <= limit)
+            return new Page<>(users, null);
+        users.remove(limit);
+        return new Page<>(users, Pagination.encodeCursor(users.get(limit - 1).getId()));
     }
 
     public static List<User> findUsersByName(String name) throws ServiceException {
-        if (name != null && !name.trim().equals(""))
-            return getAllUsers()
-                    .parallelStream()
-                    .filter(user -> user.getName().toLowerCase().contains(name.toLowerCase()))
-                    .collect(Collectors.toList());
+        return findUsersByName(name, false, Integer.MAX_VALUE);
+    }
+
+    public static List<User> findUsersByName(String name, String match, String limit) throws ServiceException {
+        boolean prefix;
+        if (match == null || match.equals("substring"))
+            prefix = false;
+        else if (match.equals("prefix"))
+            prefix = true;
         else
+            throw new ServiceException()
+                    .withStatusCode(400)
+                    .withStatusMessage("Match must be either prefix or substring.");
+        return findUsersByName(name, prefix, limit == null ? Integer.MAX_VALUE : Pagination.parseLimit(limit));
+    }
+
+    private static List<User> findUsersByName(String name, boolean prefix, int limit) throws ServiceException {
+        if (name == null || name.trim().equals(""))
             throw new ServiceException()
                     .withStatusCode(400)
                     .withStatusMessage("Name cannot be empty or consist only of whitespaces.");
+        return Application.dao.getUserDAO().findByName(name, prefix, limit);
     }
 
     public static List<Account> getAccounts(User owner) throws ServiceException {
-        final String id;
-        synchronized (owner) {
-            id = owner.getId();
-        }
-        List<Account> accounts = new ArrayList<>();
-        Application.dao.getAccountDAO().getAll()
-                .forEach(account -> {
-                    synchronized (account) {
-                        if (account.getOwner().getId().equals(id)) {
-                            accounts.add(account.clone());
-                        }
-                    }
-                });
-        return accounts;
+        return Application.dao.getAccountDAO().getByOwnerId(owner.getId());
     }
 
     public static List<Account> getAccounts(String id) throws ServiceException {
@@ -132,21 +133,17 @@ public class UserService {
                     .withStatusCode(400)
                     .withStatusMessage("Active flag cannot be null.");
 
-        Account account = Application.dao.getAccountDAO().create();
-        Account result;
-        boolean success;
-        synchronized (account) {
-            account.setOwner(owner);
-            account.setName(name);
-            account.setCurrency(currency);
-            account.setBalance(balance);
-            account.setActive(active);
-            success = Application.dao.getAccountDAO().submit(account);
-            result = account.clone();
-        }
+        long balanceUnits = Amounts.toUnits(balance, currency, "Balance");
 
-        if (success)
-            return result;
+        Account account = Application.dao.getAccountDAO().create();
+        account.setOwner(owner);
+        account.setName(name);
+        account.setCurrency(currency);
+        account.setBalanceUnits(balanceUnits);
+        account.setActive(active);
+
+        if (Application.dao.getAccountDAO().submit(account))
+            return account;
         else
             throw new ServiceException()
                     .withStatusCode(500)
@@ -162,15 +159,10 @@ public class UserService {
                     .withStatusMessage("Name cannot be empty or consist only of whitespaces.");
         }
 
-        User result;
-        boolean success;
-        synchronized (user) {
-            user.setName(newData.getName());
-            success = Application.dao.getUserDAO().submit(user);
-            result = user.clone();
-        }
+        User result = user.clone();
+        result.setName(newData.getName());
 
-        if (success)
+        if (Application.dao.getUserDAO().submit(result))
             return result;
         else
             throw new ServiceException()
@@ -189,16 +181,10 @@ public class UserService {
                     .withStatusMessage("Name cannot be empty or consist only of whitespaces.");
 
         User user = Application.dao.getUserDAO().create();
-        User result;
-        boolean success;
-        synchronized (user) {
-            user.setName(data.getName());
-            success = Application.dao.getUserDAO().submit(user);
-            result = user.clone();
-        }
+        user.setName(data.getName());
 
-        if (success)
-            return result;
+        if (Application.dao.getUserDAO().submit(user))
+            return user;
         else
             throw new ServiceException()
                     .withStatusCode(500)
@@ -208,11 +194,7 @@ public class UserService {
 
     public static void deleteUser(User user) throws ServiceException {
         List<Account> accounts = getAccounts(user);
-        boolean success;
-        synchronized (user) {
-            success = Application.dao.getUserDAO().delete(user);
-        }
-        if (success)
+        if (Application.dao.getUserDAO().delete(user))
             AccountService.deactivateAccounts(accounts);
         else
             throw new ServiceException()
@@ -1,18 +1,27 @@
 package com.ulanm.moneytransfer;
 
 import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.response.Response;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import static com.jayway.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
 
 
 public class AccountIT {
@@ -78,6 +87,41 @@ public class AccountIT {
                 ));
     }
 
+    /**
+     * Positive case - amounts, currency and dates written by the serializer module
+     */
+    @Test
+    public void testGetAccountFormatPass() {
+        final String sourceId = createTestAccount("1234.50");
+        final String destinationId = createTestAccount("0.00");
+        String creationDateTime = with()
+                .get("/account/info/" + sourceId)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("balance", equalTo("1234.50"))
+                .and()
+                .body("currency", equalTo("USD"))
+                .extract()
+                .path("creationDateTime");
+        assertThat(creationDateTime.matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}"), is(true));
+        given()
+                .header("Content-Type", "application/json")
+                .body(testTransfer(sourceId, destinationId, "0.05"))
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("amount", equalTo(".05"))
+                .and()
+                .body("sourceAccount.balance", equalTo("1234.45"))
+                .and()
+                .body("destinationAccount.balance", equalTo(".05"));
+    }
+
     /**
      * Positive case - account updated
      */
@@ -208,6 +252,101 @@ public class AccountIT {
                 )));
     }
 
+    /**
+     * Positive case - account transactions ordered by creation time
+     */
+    @Test
+    public void testGetAccountTransactionsOrderPass() {
+        final String id = accountCache.get(0);
+        List<String> dates = with()
+                .get("/account/transactions/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .extract()
+                .body()
+                .jsonPath()
+                .getList("creationDateTime", String.class);
+        for (int i = 1; i < dates.size(); i++)
+            assertThat(dates.get(i - 1), lessThanOrEqualTo(dates.get(i)));
+    }
+
+    /**
+     * Positive case - account transactions retrieved page by page
+     */
+    @Test
+    public void testGetAccountTransactionsPagePass() {
+        final String id = accountCache.get(0);
+        List<String> allIds = with()
+                .get("/account/transactions/" + id)
+                .then()
+                .extract()
+                .body()
+                .jsonPath()
+                .getList("id");
+        List<String> pagedIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            Response page = given()
+                    .param("limit", 3)
+                    .param("cursor", cursor == null ? "" : cursor)
+                    .when()
+                    .get("/account/transactions/" + id);
+            page.then()
+                    .assertThat()
+                    .statusCode(200)
+                    .and()
+                    .body("$", hasSize(lessThanOrEqualTo(3)));
+            pagedIds.addAll(page.jsonPath().getList("id"));
+            cursor = page.header("X-Next-Cursor");
+        } while (cursor != null);
+        assertThat(pagedIds, equalTo(allIds));
+    }
+
+    /**
+     * Positive case - account transactions filtered by time range
+     */
+    @Test
+    public void testGetAccountTransactionsRangePass() {
+        final String id = accountCache.get(0);
+        given()
+                .param("from", "2000-01-01 00:00:00")
+                .param("to", "2000-02-01 00:00:00")
+                .when()
+                .get("/account/transactions/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("$", hasSize(0));
+        given()
+                .param("from", "2000-01-01 00:00:00")
+                .when()
+                .get("/account/transactions/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("$", not(hasSize(0)));
+    }
+
+    /**
+     * Negative case - wrong date format
+     */
+    @Test
+    public void testGetAccountTransactionsRangeFail() {
+        final String id = accountCache.get(0);
+        given()
+                .param("from", "yesterday")
+                .when()
+                .get("/account/transactions/" + id)
+                .then()
+                .assertThat()
+                .statusCode(400)
+                .and()
+                .statusLine("HTTP/1.1 400 Wrong date format.");
+    }
+
     /**
      * Positive case - money deposited
      */
@@ -367,6 +506,31 @@ public class AccountIT {
                 .statusLine("HTTP/1.1 404 No account found with ID: " + id);
     }
 
+    /**
+     * Positive case - lock metrics count the locks taken by a transfer
+     */
+    @Test
+    public void testGetLockMetricsPass() {
+        given()
+                .body(testTransfer(accountCache.get(0), accountCache.get(1), "0.01"))
+                .post("/account/transfer");
+        with()
+                .get("/account/locks")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("stripes", greaterThan(0))
+                .body("acquired", greaterThan(0))
+                .body("$", allOf(
+                        hasKey("locked"),
+                        hasKey("contended"),
+                        hasKey("timedOut"),
+                        hasKey("totalWaitMicros"),
+                        hasKey("maxWaitMicros")
+                ));
+    }
+
     /**
      * Negative case - malformed JSON
      */
@@ -837,4 +1001,424 @@ public class AccountIT {
                 .statusLine("HTTP/1.1 403 Insufficient funds.");
     }
 
+    /**
+     * Negative case - rejected transfer stored as failed
+     */
+    @Test
+    public void testTransferRejectedFail() {
+        final String sourceId = createTestAccount("10.00");
+        final String destinationId = createTestAccount("0.00");
+        given()
+                .header("Content-Type", "application/json")
+                .body(testTransfer(sourceId, destinationId, "50.00"))
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(403)
+                .and()
+                .statusLine("HTTP/1.1 403 Insufficient funds.");
+        with()
+                .get("/account/transactions/" + sourceId)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("status", hasItem("FAILED"))
+                .and()
+                .body("status", not(hasItem("CREATED")));
+    }
+
+    /**
+     * Negative case - more decimal places than the currency has
+     */
+    @Test
+    public void testTransferFail6() {
+        final String sourceId = accountCache.get(0);
+        final String destinationId = accountCache.get(1);
+        given()
+                .header("Content-Type", "application/json")
+                .body("{\n" +
+                        "    \"sourceAccountId\": \"" + sourceId + "\",\n" +
+                        "    \"destinationAccountId\": \"" + destinationId + "\",\n" +
+                        "    \"comment\": \"a test transfer\",\n" +
+                        "    \"currency\": \"USD\",\n" +
+                        "    \"amount\": \"1.005\"\n" +
+                        "}")
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(400)
+                .and()
+                .statusLine("HTTP/1.1 400 Amount has too many decimal places for USD.");
+    }
+
+    /**
+     * Positive case - batch executed item by item
+     */
+    @Test
+    public void testTransferBatchPass() {
+        final String sourceId = createTestAccount("100.00");
+        final String destinationId = createTestAccount("50.00");
+        given()
+                .header("Content-Type", "application/json")
+                .body(testBatch(sourceId, destinationId))
+                .when()
+                .post("/account/transfer/batch")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("statusCode", contains(200, 403, 200))
+                .and()
+                .body("transaction.status", contains("EXECUTED", "FAILED", "EXECUTED"));
+        with().get("/account/info/" + sourceId).then().assertThat().body("balance", equalTo("80.00"));
+        with().get("/account/info/" + destinationId).then().assertThat().body("balance", equalTo("70.00"));
+    }
+
+    /**
+     * Negative case - atomic batch rolled back
+     */
+    @Test
+    public void testTransferBatchAtomicFail() {
+        final String sourceId = createTestAccount("100.00");
+        final String destinationId = createTestAccount("50.00");
+        given()
+                .header("Content-Type", "application/json")
+                .queryParam("atomic", "true")
+                .body(testBatch(sourceId, destinationId))
+                .when()
+                .post("/account/transfer/batch")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("statusCode", contains(409, 403, 409))
+                .and()
+                .body("transaction.status", everyItem(equalTo("FAILED")));
+        with().get("/account/info/" + sourceId).then().assertThat().body("balance", equalTo("100.00"));
+        with().get("/account/info/" + destinationId).then().assertThat().body("balance", equalTo("50.00"));
+    }
+
+    /**
+     * Positive case - retried transfer with the same idempotency key executed once
+     */
+    @Test
+    public void testTransferIdempotencyKeyPass() {
+        final String sourceId = createTestAccount("100.00");
+        final String destinationId = createTestAccount("50.00");
+        final String key = UUID.randomUUID().toString();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+            ids.add(given()
+                    .header("Content-Type", "application/json")
+                    .header("Idempotency-Key", key)
+                    .body(testTransfer(sourceId, destinationId, "30.00"))
+                    .when()
+                    .post("/account/transfer")
+                    .then()
+                    .assertThat()
+                    .statusCode(200)
+                    .and()
+                    .body("status", equalTo("EXECUTED"))
+                    .extract()
+                    .path("id"));
+        assertThat(ids.get(1), equalTo(ids.get(0)));
+        with().get("/account/info/" + sourceId).then().assertThat().body("balance", equalTo("70.00"));
+        with().get("/account/info/" + destinationId).then().assertThat().body("balance", equalTo("80.00"));
+    }
+
+    /**
+     * Negative case - idempotency key reused for another request
+     */
+    @Test
+    public void testTransferIdempotencyKeyFail() {
+        final String sourceId = createTestAccount("100.00");
+        final String destinationId = createTestAccount("50.00");
+        final String key = UUID.randomUUID().toString();
+        given()
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", key)
+                .body(testTransfer(sourceId, destinationId, "30.00"))
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(200);
+        given()
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", key)
+                .body(testTransfer(sourceId, destinationId, "40.00"))
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(422);
+        with().get("/account/info/" + sourceId).then().assertThat().body("balance", equalTo("70.00"));
+    }
+
+    /**
+     * Positive case - account updated with the entity tag of its current version
+     */
+    @Test
+    public void testUpdateAccountIfMatchPass() {
+        final String id = createTestAccount("100.00");
+        final String entityTag = with().get("/account/info/" + id).then().extract().header("ETag");
+        final String updatedEntityTag = given()
+                .header("Content-Type", "application/json")
+                .header("If-Match", entityTag)
+                .body(testAccountUpdate("200.00"))
+                .when()
+                .put("/account/edit/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("balance", equalTo("200.00"))
+                .extract()
+                .header("ETag");
+        assertThat(updatedEntityTag, not(equalTo(entityTag)));
+        with().get("/account/info/" + id).then().assertThat().header("ETag", updatedEntityTag);
+    }
+
+    /**
+     * Positive case - every change of an account publishes a newer version
+     */
+    @Test
+    public void testAccountVersionPass() {
+        final String id = createTestAccount("100.00");
+        final String destinationId = createTestAccount("0.00");
+        long version = Long.parseLong(with().get("/account/info/" + id).header("ETag").replace("\"", ""));
+        given()
+                .header("Content-Type", "application/json")
+                .body("{\n" +
+                        "    \"targetAccountId\": \"" + id + "\",\n" +
+                        "    \"amount\": \"10.00\"\n" +
+                        "}")
+                .when()
+                .post("/account/deposit")
+                .then()
+                .assertThat()
+                .statusCode(200);
+        long deposited = Long.parseLong(with().get("/account/info/" + id).header("ETag").replace("\"", ""));
+        assertThat(deposited, greaterThan(version));
+        given()
+                .header("Content-Type", "application/json")
+                .body(testTransfer(id, destinationId, "30.00"))
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(200);
+        Response after = with().get("/account/info/" + id);
+        assertThat(Long.parseLong(after.header("ETag").replace("\"", "")), greaterThan(deposited));
+        after.then().assertThat().body("balance", equalTo("80.00"));
+    }
+
+    /**
+     * Negative case - account changed since the entity tag of the update was read
+     */
+    @Test
+    public void testUpdateAccountIfMatchFail() {
+        final String id = createTestAccount("100.00");
+        final String entityTag = with().get("/account/info/" + id).then().extract().header("ETag");
+        given()
+                .header("Content-Type", "application/json")
+                .body("{\n" +
+                        "    \"targetAccountId\": \"" + id + "\",\n" +
+                        "    \"amount\": \"10.00\"\n" +
+                        "}")
+                .when()
+                .post("/account/deposit")
+                .then()
+                .assertThat()
+                .statusCode(200);
+        given()
+                .header("Content-Type", "application/json")
+                .header("If-Match", entityTag)
+                .body(testAccountUpdate("200.00"))
+                .when()
+                .put("/account/edit/" + id)
+                .then()
+                .assertThat()
+                .statusCode(409);
+        with().get("/account/info/" + id).then().assertThat().body("balance", equalTo("110.00"));
+    }
+
+    /**
+     * Positive case - asynchronous transfer accepted and executed later
+     */
+    @Test
+    public void testTransferAsyncPass() {
+        final String sourceId = createTestAccount("100.00");
+        final String destinationId = createTestAccount("50.00");
+        Response response = given()
+                .header("Content-Type", "application/json")
+                .queryParam("async", "true")
+                .body(testTransfer(sourceId, destinationId, "30.00"))
+                .when()
+                .post("/account/transfer");
+        response.then()
+                .assertThat()
+                .statusCode(202)
+                .and()
+                .body("status", equalTo("CREATED"));
+        final String id = response.path("id");
+        assertThat(response.header("Location"), equalTo("/transaction/info/" + id));
+        assertThat(awaitTransaction(id), equalTo("EXECUTED"));
+        with().get("/account/info/" + sourceId).then().assertThat().body("balance", equalTo("70.00"));
+        with().get("/account/info/" + destinationId).then().assertThat().body("balance", equalTo("80.00"));
+    }
+
+    /**
+     * Negative case - asynchronous transfer with insufficient funds failed
+     */
+    @Test
+    public void testTransferAsyncFail() {
+        final String sourceId = createTestAccount("100.00");
+        final String destinationId = createTestAccount("50.00");
+        final String id = given()
+                .header("Content-Type", "application/json")
+                .queryParam("async", "true")
+                .body(testTransfer(sourceId, destinationId, "300.00"))
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(202)
+                .extract()
+                .path("id");
+        assertThat(awaitTransaction(id), equalTo("FAILED"));
+        with().get("/account/info/" + sourceId).then().assertThat().body("balance", equalTo("100.00"));
+        with().get("/account/info/" + destinationId).then().assertThat().body("balance", equalTo("50.00"));
+    }
+
+    /**
+     * Positive case - missed transactions replayed and new ones streamed as events
+     */
+    @Test
+    public void testStreamTransactionsPass() throws IOException {
+        final String sourceId = createTestAccount("100.00");
+        final String destinationId = createTestAccount("50.00");
+        final String lastId = transferTestAmount(sourceId, destinationId, "10.00");
+        final String missedId = transferTestAmount(sourceId, destinationId, "20.00");
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + Application.PORT_NUMBER + "/account/events/" + sourceId).openConnection();
+        connection.setRequestProperty("Last-Event-ID", lastId);
+        connection.setReadTimeout(10_000);
+        try {
+            assertThat(connection.getResponseCode(), equalTo(200));
+            assertThat(connection.getContentType(), startsWith("text/event-stream"));
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            assertThat(readEventId(reader), equalTo(missedId));
+            final String newId = transferTestAmount(sourceId, destinationId, "30.00");
+            assertThat(readEventId(reader), equalTo(newId));
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Negative case - resumed after a transaction which is not in the feed
+     */
+    @Test
+    public void testStreamTransactionsFail() {
+        given()
+                .header("Last-Event-ID", UUID.randomUUID().toString())
+                .when()
+                .get("/account/events")
+                .then()
+                .assertThat()
+                .statusCode(410);
+    }
+
+    private static String transferTestAmount(String sourceId, String destinationId, String amount) {
+        return given()
+                .header("Content-Type", "application/json")
+                .body(testTransfer(sourceId, destinationId, amount))
+                .when()
+                .post("/account/transfer")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .extract()
+                .path("id");
+    }
+
+    private static String readEventId(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("id: "))
+                return line.substring("id: ".length());
+        }
+        return null;
+    }
+
+    private static String awaitTransaction(String id) {
+        String status = "CREATED";
+        for (int i = 0; i < 100 && status.equals("CREATED"); i++) {
+            if (i > 0) {
+                try {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            status = with().get("/transaction/info/" + id).then().extract().path("status");
+        }
+        return status;
+    }
+
+    private static String createTestAccount(String balance) {
+        return given()
+                .header("Content-Type", "application/json")
+                .body("{\n" +
+                        "    \"ownerId\": \"" + userCache.get(0) + "\",\n" +
+                        "    \"name\": \"batch_account\",\n" +
+                        "    \"balance\": \"" + balance + "\",\n" +
+                        "    \"currency\": \"USD\",\n" +
+                        "    \"active\": true\n" +
+                        "}")
+                .when()
+                .post("/user/create-account")
+                .then()
+                .assertThat()
+                .statusCode(201)
+                .extract()
+                .path("id");
+    }
+
+    private static String testAccountUpdate(String balance) {
+        return "{\n" +
+                "    \"ownerId\": \"" + userCache.get(0) + "\",\n" +
+                "    \"name\": \"updated_account\",\n" +
+                "    \"balance\": \"" + balance + "\",\n" +
+                "    \"currency\": \"USD\",\n" +
+                "    \"active\": true\n" +
+                "}";
+    }
+
+    private static String testBatch(String sourceId, String destinationId) {
+        return "[" +
+                testTransfer(sourceId, destinationId, "30.00") + "," +
+                testTransfer(sourceId, destinationId, "100.00") + "," +
+                testTransfer(destinationId, sourceId, "10.00") +
+                "]";
+    }
+
+    private static String testTransfer(String sourceId, String destinationId, String amount) {
+        return "{\n" +
+                "    \"sourceAccountId\": \"" + sourceId + "\",\n" +
+                "    \"destinationAccountId\": \"" + destinationId + "\",\n" +
+                "    \"comment\": \"a batch transfer\",\n" +
+                "    \"currency\": \"USD\",\n" +
+                "    \"amount\": \"" + amount + "\"\n" +
+                "}";
+    }
+
 }
@@ -1,17 +1,23 @@
 package com.ulanm.moneytransfer;
 
 import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.response.Response;
 import org.hamcrest.Matchers;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.jayway.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
 
 public class UserIT {
 
@@ -117,6 +123,68 @@ public class UserIT {
                 ));
     }
 
+    /**
+     * Positive case - user list retrieved page by page
+     */
+    @Test
+    public void testGetAllUsersPagePass() {
+        Response firstPage = given()
+                .param("limit", 2)
+                .when()
+                .get("/user/all");
+        firstPage.then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .header("X-Next-Cursor", notNullValue())
+                .and()
+                .body("$", hasSize(2));
+        List<String> firstIds = firstPage.jsonPath().getList("id");
+        given()
+                .param("limit", 2)
+                .param("cursor", firstPage.header("X-Next-Cursor"))
+                .when()
+                .get("/user/all")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("id", everyItem(not(isIn(firstIds))));
+    }
+
+    /**
+     * Negative case - wrong limit
+     */
+    @Test
+    public void testGetAllUsersPageFail1() {
+        given()
+                .param("limit", "abc")
+                .when()
+                .get("/user/all")
+                .then()
+                .assertThat()
+                .statusCode(400)
+                .and()
+                .statusLine("HTTP/1.1 400 Wrong limit format.");
+    }
+
+    /**
+     * Negative case - malformed cursor
+     */
+    @Test
+    public void testGetAllUsersPageFail2() {
+        given()
+                .param("limit", 2)
+                .param("cursor", "%%%")
+                .when()
+                .get("/user/all")
+                .then()
+                .assertThat()
+                .statusCode(400)
+                .and()
+                .statusLine("HTTP/1.1 400 Wrong cursor format.");
+    }
+
     /**
      * Positive case - user info retrieved
      */
@@ -136,6 +204,112 @@ public class UserIT {
                 ));
     }
 
+    /**
+     * Positive case - compact output by default, pretty output on request
+     */
+    @Test
+    public void testGetUserFormatPass() {
+        String id = userCache.get("test_user_info");
+        String compact = when()
+                .get("/user/info/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .extract()
+                .asString();
+        assertFalse(compact.contains("\n"));
+        String pretty = given()
+                .queryParam("pretty", "true")
+                .when()
+                .get("/user/info/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .extract()
+                .asString();
+        assertTrue(pretty.contains("\n"));
+        String accepted = given()
+                .header("Accept", "application/json; pretty=true")
+                .when()
+                .get("/user/info/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .extract()
+                .asString();
+        assertEquals(pretty, accepted);
+    }
+
+    /**
+     * Positive case - users created by concurrent requests visible to every request
+     */
+    @Test
+    public void testCreateUserConcurrentPass() throws Exception {
+        final int requests = 64;
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> created = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                final String name = "concurrent_user_" + i;
+                created.add(clients.submit(() -> given()
+                        .header("Content-Type", "application/json")
+                        .body("{\"name\": \"" + name + "\"}")
+                        .when()
+                        .post("/user/create")
+                        .then()
+                        .assertThat()
+                        .statusCode(201)
+                        .extract()
+                        .path("id")));
+            }
+            List<Future<?>> read = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                final String id = created.get(i).get();
+                final String name = "concurrent_user_" + i;
+                read.add(clients.submit(() -> when()
+                        .get("/user/info/" + id)
+                        .then()
+                        .assertThat()
+                        .statusCode(200)
+                        .and()
+                        .body("name", equalTo(name))));
+            }
+            for (Future<?> future : read)
+                future.get();
+        }
+        finally {
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * Positive case - IDs of created users are version 7 UUIDs ordered by creation time
+     */
+    @Test
+    public void testCreateUserTimeOrderedIdPass() {
+        long start = System.currentTimeMillis();
+        String previous = "";
+        for (int i = 0; i < 16; i++) {
+            String id = given()
+                    .header("Content-Type", "application/json")
+                    .body("{\"name\": \"time_ordered_user_" + i + "\"}")
+                    .when()
+                    .post("/user/create")
+                    .then()
+                    .assertThat()
+                    .statusCode(201)
+                    .extract()
+                    .path("id");
+            assertThat(id.matches("[0-9a-f]{8}-[0-9a-f]{4}-7[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}"), is(true));
+            assertThat(id.compareTo(previous), greaterThan(0));
+            long millis = Long.parseLong(id.substring(0, 8) + id.substring(9, 13), 16);
+            assertThat(millis, greaterThanOrEqualTo(start));
+            // the counter carries over into the time after bursts of IDs, e.g. the test data
+            assertThat(millis, lessThanOrEqualTo(System.currentTimeMillis() + 1000));
+            previous = id;
+        }
+    }
+
     /**
      * Negative case - wrong ID
      */
@@ -235,6 +409,132 @@ public class UserIT {
                 .statusLine("HTTP/1.1 404 No user found with ID: " + wrongId);
     }
 
+    /**
+     * Positive case - users found by name prefix, renamed user found by the new name only
+     */
+    @Test
+    public void testFindUsersPrefixPass() {
+        for (String name : new String[] {"Prefix_Search_Alpha", "prefix_search_beta", "other_prefix_search"})
+            given()
+                    .header("Content-Type", "application/json")
+                    .body("{\"name\": \"" + name + "\"}")
+                    .when()
+                    .post("/user/create")
+                    .then()
+                    .assertThat()
+                    .statusCode(201);
+        given()
+                .param("name", "PREFIX_SEARCH")
+                .param("match", "prefix")
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("name", containsInAnyOrder("Prefix_Search_Alpha", "prefix_search_beta"));
+        given()
+                .param("name", "prefix_search")
+                .param("limit", 1)
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("$", hasSize(1));
+        String id = given()
+                .param("name", "search_beta")
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .body("$", hasSize(1))
+                .extract()
+                .path("[0].id");
+        given()
+                .header("Content-Type", "application/json")
+                .body("{\"name\": \"renamed_search_gamma\"}")
+                .when()
+                .put("/user/edit/" + id)
+                .then()
+                .assertThat()
+                .statusCode(200);
+        given().param("name", "search_beta").when().get("/user/find").then().assertThat().body("$", hasSize(0));
+        given().param("name", "search_gamma").when().get("/user/find").then().assertThat().body("id", contains(id));
+    }
+
+    /**
+     * Positive case - users found by names of one and two characters
+     */
+    @Test
+    public void testFindUsersShortPass() {
+        for (String name : new String[] {"~short_one", "~SHORT_two", "x~s"})
+            given()
+                    .header("Content-Type", "application/json")
+                    .body("{\"name\": \"" + name + "\"}")
+                    .when()
+                    .post("/user/create")
+                    .then()
+                    .assertThat()
+                    .statusCode(201);
+        given()
+                .param("name", "~")
+                .param("match", "prefix")
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("name", containsInAnyOrder("~short_one", "~SHORT_two"));
+        given()
+                .param("name", "~S")
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("name", containsInAnyOrder("~short_one", "~SHORT_two", "x~s"));
+        given()
+                .param("name", "~s")
+                .param("limit", 2)
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("$", hasSize(2));
+        given()
+                .param("name", "~")
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("name", containsInAnyOrder("~short_one", "~SHORT_two", "x~s"));
+    }
+
+    /**
+     * Negative case - unknown match mode
+     */
+    @Test
+    public void testFindUsersMatchFail() {
+        given()
+                .param("name", "test_user")
+                .param("match", "suffix")
+                .when()
+                .get("/user/find")
+                .then()
+                .assertThat()
+                .statusCode(400)
+                .and()
+                .statusLine("HTTP/1.1 400 Match must be either prefix or substring.");
+    }
+
     /**
      * Negative case - empty name
      */
@@ -319,6 +619,59 @@ public class UserIT {
                 )));
     }
 
+    /**
+     * Positive case - user accounts follow an ownership change
+     */
+    @Test
+    public void testGetUserAccountsOwnerChangedPass() {
+        final String oldOwnerId = userCache.get("test_user_1");
+        final String newOwnerId = userCache.get("test_user_2");
+        final String accountId = given()
+                .header("Content-Type", "application/json")
+                .body("{\n" +
+                        "    \"ownerId\": \"" + oldOwnerId + "\",\n" +
+                        "    \"name\": \"moved_account\",\n" +
+                        "    \"balance\": \"1500.00\",\n" +
+                        "    \"currency\": \"USD\",\n" +
+                        "    \"active\": true\n" +
+                        "}")
+                .when()
+                .post("/user/create-account")
+                .then()
+                .assertThat()
+                .statusCode(201)
+                .extract()
+                .path("id");
+        given()
+                .header("Content-Type", "application/json")
+                .body("{\n" +
+                        "    \"ownerId\": \"" + newOwnerId + "\",\n" +
+                        "    \"name\": \"moved_account\",\n" +
+                        "    \"balance\": \"1500.00\",\n" +
+                        "    \"currency\": \"USD\",\n" +
+                        "    \"active\": true\n" +
+                        "}")
+                .when()
+                .put("/account/edit/" + accountId)
+                .then()
+                .assertThat()
+                .statusCode(200);
+        when()
+                .get("/user/accounts/" + oldOwnerId)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("id", not(hasItem(accountId)));
+        when()
+                .get("/user/accounts/" + newOwnerId)
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .and()
+                .body("id", hasItem(accountId));
+    }
+
     /**
      * Negative case - empty ID
      */
@@ -0,0 +1,46 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ByteBufferInputTest {
+
+    /**
+     * Positive case - lines split at every terminator the way a data input stream splits them
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testReadLinePass() throws IOException {
+        byte[] bytes = "first\nsecond\r\nthird\rlast".getBytes(StandardCharsets.ISO_8859_1);
+        ByteBufferInput input = new ByteBufferInput(ByteBuffer.wrap(bytes));
+        DataInputStream expected = new DataInputStream(new ByteArrayInputStream(bytes));
+        for (int i = 0; i < 5; i++)
+            assertThat(input.readLine(), equalTo(expected.readLine()));
+        assertThat(input.readLine(), nullValue());
+    }
+
+    /**
+     * Positive case - values put into the buffer read back in order
+     */
+    @Test
+    public void testReadValuesPass() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.putInt(42).putLong(-7L).put((byte) 1).putShort((short) 0xbeef);
+        buffer.flip();
+        ByteBufferInput input = new ByteBufferInput(buffer);
+        assertThat(input.readInt(), equalTo(42));
+        assertThat(input.readLong(), equalTo(-7L));
+        assertThat(input.readBoolean(), is(true));
+        assertThat(input.readUnsignedShort(), equalTo(0xbeef));
+        assertThat(input.readLine(), nullValue());
+    }
+
+}
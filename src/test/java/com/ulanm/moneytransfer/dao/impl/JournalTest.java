@@ -0,0 +1,214 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class JournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Positive case - records replayed in the order they were appended
+     */
+    @Test
+    public void testReplayPass() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (Journal journal = open(path, new ArrayList<>())) {
+            for (int i = 0; i < 100; i++)
+                journal.append(record("record-" + i));
+            journal.sync();
+        }
+        List<String> replayed = new ArrayList<>();
+        open(path, replayed).close();
+        assertThat(replayed, hasSize(100));
+        for (int i = 0; i < 100; i++)
+            assertThat(replayed.get(i), equalTo("record-" + i));
+    }
+
+    /**
+     * Positive case - record torn by a crash dropped, records appended after it replayed
+     */
+    @Test
+    public void testReplayTornTailPass() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (Journal journal = open(path, new ArrayList<>())) {
+            journal.append(record("first"));
+            journal.append(record("second"));
+            journal.sync();
+        }
+        Path segment = segment(path, 0);
+        long size = Files.size(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(size - 3);
+        }
+        List<String> replayed = new ArrayList<>();
+        try (Journal journal = open(path, replayed)) {
+            assertThat(replayed, contains("first"));
+            journal.append(record("third"));
+            journal.sync();
+        }
+        replayed.clear();
+        open(path, replayed).close();
+        assertThat(replayed, contains("first", "third"));
+    }
+
+    /**
+     * Negative case - record with a wrong checksum and everything after it dropped
+     */
+    @Test
+    public void testReplayChecksumFail() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        byte[] first = record("first");
+        try (Journal journal = open(path, new ArrayList<>())) {
+            journal.append(first);
+            journal.append(record("second"));
+            journal.append(record("third"));
+            journal.sync();
+        }
+        Path segment = segment(path, 0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // last byte of the payload of the second record
+            long position = 8 + first.length + 8 + record("second").length - 1;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xff);
+        }
+        List<String> replayed = new ArrayList<>();
+        open(path, replayed).close();
+        assertThat(replayed, contains("first"));
+        assertThat(Files.size(segment), equalTo((long) (8 + first.length)));
+    }
+
+    /**
+     * Positive case - record of every concurrent writer on disk once its sync() returns
+     */
+    @Test
+    public void testGroupCommitPass() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        final int writers = 8;
+        final int records = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<String> missing = Collections.synchronizedList(new ArrayList<>());
+        try (Journal journal = open(path, new ArrayList<>())) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                final int writer = w;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < records; i++) {
+                        String value = "writer-" + writer + "-" + i;
+                        journal.append(record(value));
+                        journal.sync();
+                        if (!read(segment(path, 0)).contains(value))
+                            missing.add(value);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertThat(missing, empty());
+        List<String> replayed = new ArrayList<>();
+        open(path, replayed).close();
+        assertThat(replayed, hasSize(writers * records));
+    }
+
+    /**
+     * Positive case - records appended concurrently without sync() written in the order of each writer by close()
+     */
+    @Test
+    public void testCloseWritesAppendedPass() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        final int writers = 4;
+        final int records = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try (Journal journal = open(path, new ArrayList<>())) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                final int writer = w;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < records; i++)
+                        journal.append(record(writer + "-" + i));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        List<String> replayed = new ArrayList<>();
+        open(path, replayed).close();
+        assertThat(replayed, hasSize(writers * records));
+        int[] next = new int[writers];
+        for (String value : replayed) {
+            int writer = Integer.parseInt(value.substring(0, value.indexOf('-')));
+            assertThat(value, equalTo(writer + "-" + next[writer]++));
+        }
+    }
+
+    private static Journal open(Path path, List<String> replayed) throws IOException {
+        return new Journal(path, 0, record -> replayed.add(record.readUTF()));
+    }
+
+    private static Path segment(Path path, long start) {
+        return path.resolveSibling(String.format("%s.%020d", path.getFileName(), start));
+    }
+
+    private static byte[] record(String value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(value);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Values of the complete records in the segment, read the way they are laid out on disk.
+    private static List<String> read(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<String> values = new ArrayList<>();
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            buffer.getInt();
+            if (buffer.remaining() < length)
+                break;
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            values.add(new String(payload, 2, payload.length - 2, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.dao.BundleDAO;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotTest {
+
+    private static final long SEGMENT_SIZE = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Positive case - state restored from a snapshot taken under load and the journal written after it
+     */
+    @Test
+    public void testRestorePass() throws Exception {
+        clear();
+        Path path = folder.getRoot().toPath().resolve("journal");
+        JournalBundleDAO dao = JournalBundleDAO.open(path, 0, SEGMENT_SIZE);
+        List<String> accountIds = new ArrayList<>();
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            User user = dao.getUserDAO().create();
+            user.setName("user " + i);
+            dao.getUserDAO().submit(user);
+            userIds.add(user.getId());
+            Account account = dao.getAccountDAO().create();
+            account.setOwner(user);
+            account.setName("account " + i);
+            account.setCurrency(Currency.getInstance("USD"));
+            account.setBalanceUnits(1_000_000);
+            account.setActive(true);
+            dao.getAccountDAO().submit(account);
+            accountIds.add(account.getId());
+        }
+        dao.sync();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        try {
+            for (int w = 0; w < 4; w++) {
+                final Random random = new Random(w);
+                writers.add(executor.submit(() -> {
+                    while (running.get())
+                        change(dao, random, userIds, accountIds);
+                    return null;
+                }));
+            }
+            while (segments(path).size() < 4)
+                Thread.sleep(10);
+            dao.snapshot();
+            long position = snapshotPosition(path);
+            TreeSet<Long> remaining = segments(path);
+            assertThat(remaining.first(), lessThanOrEqualTo(position));
+            Long next = remaining.higher(remaining.first());
+            assertThat(next == null || next > position, is(true));
+            assertThat(remaining.first(), greaterThan(0L));
+            // let the writers go on past the snapshot, so the journal tail is needed as well
+            long end = remaining.last();
+            while (segments(path).last() == end)
+                Thread.sleep(10);
+        }
+        finally {
+            running.set(false);
+            for (Future<?> writer : writers)
+                writer.get();
+            executor.shutdown();
+        }
+        dao.sync();
+        Map<String, String> expected = dump();
+        dao.close();
+
+        clear();
+        assertThat(dump().isEmpty(), is(true));
+        JournalBundleDAO.open(path, 0, SEGMENT_SIZE).close();
+        assertThat(dump(), equalTo(expected));
+        clear();
+    }
+
+    private static void change(BundleDAO dao, Random random, List<String> userIds, List<String> accountIds) {
+        Account source = dao.getAccountDAO().getById(accountIds.get(random.nextInt(accountIds.size()))).clone();
+        Account destination = dao.getAccountDAO().getById(accountIds.get(random.nextInt(accountIds.size()))).clone();
+        Transaction transaction = dao.getTransactionDAO().create();
+        transaction.setSourceAccount(source);
+        transaction.setDestinationAccount(destination);
+        transaction.setCurrency(Currency.getInstance("USD"));
+        transaction.setAmountUnits(1 + random.nextInt(100));
+        transaction.setComment("snapshot test");
+        dao.getTransactionDAO().submit(transaction);
+        source.setBalanceUnits(source.getBalanceUnits() - 1);
+        dao.getAccountDAO().submit(source);
+        if (random.nextBoolean()) {
+            transaction.setStatus(Transaction.TransactionStatus.EXECUTED);
+            transaction.setExecutionDateTime(LocalDateTime.now());
+            dao.getTransactionDAO().submit(transaction);
+        }
+        User user = dao.getUserDAO().getById(userIds.get(random.nextInt(userIds.size()))).clone();
+        user.setName("user " + random.nextInt(1000));
+        dao.getUserDAO().submit(user);
+        dao.sync();
+    }
+
+    // Stored state by ID, without the versions of users and transactions, which are not kept.
+    private static Map<String, String> dump() {
+        Map<String, String> state = new TreeMap<>();
+        for (User user : UserInMemoryDAO.values())
+            state.put(user.getId(), user.getName() + " " + user.getCreationDateTime());
+        for (Account account : AccountInMemoryDAO.values())
+            state.put(account.getId(), account.getVersion() + " " + account.getName() + " " + account.getOwner().getId()
+                    + " " + account.getBalanceUnits() + " " + account.isActive());
+        for (Transaction transaction : TransactionInMemoryDAO.values())
+            state.put(transaction.getId(), transaction.getStatus() + " " + transaction.getSourceAccount().getId()
+                    + " " + transaction.getDestinationAccount().getId() + " " + transaction.getAmountUnits()
+                    + " " + transaction.getCreationDateTime() + " " + transaction.getExecutionDateTime());
+        return state;
+    }
+
+    // Removes everything from the in-memory DAOs without writing to any journal.
+    private static void clear() {
+        for (Transaction transaction : list(TransactionInMemoryDAO.values()))
+            new TransactionInMemoryDAO().delete(transaction);
+        for (Account account : list(AccountInMemoryDAO.values()))
+            new AccountInMemoryDAO().delete(account);
+        for (User user : list(UserInMemoryDAO.values()))
+            new UserInMemoryDAO().delete(user);
+    }
+
+    private static <T> List<T> list(Iterable<T> values) {
+        List<T> list = new ArrayList<>();
+        values.forEach(list::add);
+        return list;
+    }
+
+    private static long snapshotPosition(Path path) throws IOException {
+        try (InputStream file = Files.newInputStream(path.resolveSibling(path.getFileName() + ".snapshot"));
+             DataInputStream in = new DataInputStream(file)) {
+            in.readInt();
+            in.readInt();
+            return in.readLong();
+        }
+    }
+
+    private static TreeSet<Long> segments(Path path) throws IOException {
+        TreeSet<Long> starts = new TreeSet<>();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent(), prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d{20}"))
+                    starts.add(Long.parseLong(suffix));
+            }
+        }
+        return starts;
+    }
+
+}
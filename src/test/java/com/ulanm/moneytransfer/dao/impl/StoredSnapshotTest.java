@@ -0,0 +1,168 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.dao.BundleDAO;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.junit.Test;
+
+import java.util.Currency;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class StoredSnapshotTest {
+
+    private final BundleDAO dao = new InMemoryBundleDAO();
+
+    /**
+     * Positive case - a submitted account is published as a new version, the version read before stays as it was
+     */
+    @Test
+    public void testAccountVersionPass() {
+        Account account = createAccount();
+        Account stored = dao.getAccountDAO().getById(account.getId());
+        Account changed = stored.clone();
+        changed.setBalanceUnits(500);
+        assertThat(dao.getAccountDAO().submit(changed), is(true));
+        Account published = dao.getAccountDAO().getById(account.getId());
+        assertThat(published.getVersion(), equalTo(stored.getVersion() + 1));
+        assertThat(published.getBalanceUnits(), equalTo(500L));
+        assertThat(stored.getBalanceUnits(), equalTo(100L));
+        assertThat(dao.getAccountDAO().getById(account.getId()), sameInstance(published));
+    }
+
+    /**
+     * Negative case - a stored account cannot be modified
+     */
+    @Test
+    public void testAccountReadOnlyFail() {
+        Account stored = dao.getAccountDAO().getById(createAccount().getId());
+        try {
+            stored.setBalanceUnits(0);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertThat(stored.getBalanceUnits(), equalTo(100L));
+        }
+    }
+
+    /**
+     * Positive case - a submitted user is published as a new version, the version read before stays as it was
+     */
+    @Test
+    public void testUserVersionPass() {
+        User stored = dao.getUserDAO().getById(createUser("snapshot user").getId());
+        User changed = stored.clone();
+        changed.setName("renamed snapshot user");
+        assertThat(dao.getUserDAO().submit(changed), is(true));
+        User published = dao.getUserDAO().getById(stored.getId());
+        assertThat(published.getVersion(), equalTo(stored.getVersion() + 1));
+        assertThat(published.getName(), equalTo("renamed snapshot user"));
+        assertThat(stored.getName(), equalTo("snapshot user"));
+    }
+
+    /**
+     * Negative case - a stored user cannot be modified
+     */
+    @Test
+    public void testUserReadOnlyFail() {
+        User stored = dao.getUserDAO().getById(createUser("snapshot user").getId());
+        try {
+            stored.setName("changed");
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertThat(stored.getName(), equalTo("snapshot user"));
+        }
+    }
+
+    /**
+     * Positive case - a submitted transaction is published as a new version
+     */
+    @Test
+    public void testTransactionVersionPass() {
+        Transaction transaction = createTransaction();
+        Transaction stored = dao.getTransactionDAO().getById(transaction.getId());
+        Transaction changed = stored.clone();
+        changed.setAmountUnits(20);
+        assertThat(dao.getTransactionDAO().submit(changed), is(true));
+        Transaction published = dao.getTransactionDAO().getById(transaction.getId());
+        assertThat(published.getVersion(), equalTo(stored.getVersion() + 1));
+        assertThat(published.getAmountUnits(), equalTo(20L));
+        assertThat(stored.getAmountUnits(), equalTo(10L));
+    }
+
+    /**
+     * Negative case - a stored transaction cannot be modified
+     */
+    @Test
+    public void testTransactionReadOnlyFail() {
+        Transaction stored = dao.getTransactionDAO().getById(createTransaction().getId());
+        try {
+            stored.setStatus(Transaction.TransactionStatus.EXECUTED);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertThat(stored.getStatus(), equalTo(Transaction.TransactionStatus.CREATED));
+        }
+    }
+
+    /**
+     * Positive case - a transaction moved into the history keeps counting its versions and stays read-only
+     */
+    @Test
+    public void testTransactionHistoryVersionPass() {
+        Transaction created = dao.getTransactionDAO().getById(createTransaction().getId());
+        Transaction executed = created.clone();
+        executed.setStatus(Transaction.TransactionStatus.EXECUTED);
+        assertThat(dao.getTransactionDAO().submit(executed), is(true));
+        Transaction stored = dao.getTransactionDAO().getById(created.getId());
+        assertThat(stored.getVersion(), equalTo(created.getVersion() + 1));
+        assertThat(dao.getTransactionDAO().getByAccountId(created.getSourceAccount().getId()).get(0).getVersion(),
+                equalTo(stored.getVersion()));
+        try {
+            stored.setStatus(Transaction.TransactionStatus.FAILED);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertThat(stored.getStatus(), equalTo(Transaction.TransactionStatus.EXECUTED));
+        }
+        Transaction failed = stored.clone();
+        failed.setStatus(Transaction.TransactionStatus.FAILED);
+        assertThat(dao.getTransactionDAO().submit(failed), is(true));
+        Transaction published = dao.getTransactionDAO().getById(created.getId());
+        assertThat(published.getVersion(), equalTo(stored.getVersion() + 1));
+        assertThat(published.getStatus(), equalTo(Transaction.TransactionStatus.FAILED));
+    }
+
+    private User createUser(String name) {
+        User user = dao.getUserDAO().create();
+        user.setName(name);
+        dao.getUserDAO().submit(user);
+        return user;
+    }
+
+    private Account createAccount() {
+        Account account = dao.getAccountDAO().create();
+        account.setOwner(createUser("snapshot owner"));
+        account.setName("snapshot account");
+        account.setCurrency(Currency.getInstance("USD"));
+        account.setBalanceUnits(100);
+        account.setActive(true);
+        dao.getAccountDAO().submit(account);
+        return account;
+    }
+
+    private Transaction createTransaction() {
+        Transaction transaction = dao.getTransactionDAO().create();
+        transaction.setSourceAccount(createAccount());
+        transaction.setDestinationAccount(createAccount());
+        transaction.setCurrency(Currency.getInstance("USD"));
+        transaction.setAmountUnits(10);
+        dao.getTransactionDAO().submit(transaction);
+        return transaction;
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TransactionHistoryTest {
+
+    /**
+     * Positive case - transactions stored concurrently are found by id and listed in order by account
+     */
+    @Test
+    public void testConcurrentPutPass() throws Exception {
+        TransactionHistory history = new TransactionHistory();
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            accounts.add(UUID.randomUUID().toString());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> writers = new ArrayList<>();
+        for (int w = 0; w < 8; w++) {
+            final int writer = w;
+            writers.add(executor.submit(() -> {
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    Transaction transaction = transaction(accounts.get(writer % 4), accounts.get((writer + i) % 4), "writer " + writer);
+                    history.put(transaction, null);
+                    ids.add(transaction.getId());
+                }
+                return ids;
+            }));
+        }
+        int total = 0;
+        for (Future<List<String>> writer : writers)
+            for (String id : writer.get()) {
+                assertThat(history.get(id).getId(), equalTo(id));
+                total++;
+            }
+        executor.shutdown();
+
+        int listed = 0;
+        for (String account : accounts) {
+            List<Transaction> transactions = history.getByAccountId(account, null, null, null, Integer.MAX_VALUE);
+            for (int i = 1; i < transactions.size(); i++) {
+                Transaction previous = transactions.get(i - 1);
+                Transaction current = transactions.get(i);
+                int result = previous.getCreationDateTime().compareTo(current.getCreationDateTime());
+                assertThat(result < 0 || (result == 0 && previous.getId().compareTo(current.getId()) < 0), is(true));
+            }
+            listed += transactions.size();
+        }
+        int count = 0;
+        for (Transaction ignored : history.values())
+            count++;
+        assertThat(count, equalTo(total));
+        // self transfers are listed once, the rest once for each account
+        assertThat(listed, greaterThan(total));
+    }
+
+    /**
+     * Positive case - a stored transaction is updated in place and keeps its comment
+     */
+    @Test
+    public void testReplacePass() {
+        TransactionHistory history = new TransactionHistory();
+        Transaction transaction = transaction(UUID.randomUUID().toString(), UUID.randomUUID().toString(), "comment");
+        history.put(transaction, null);
+        transaction.setStatus(Transaction.TransactionStatus.FAILED);
+        assertThat(history.replace(transaction, null), is(true));
+        Transaction stored = history.get(transaction.getId());
+        assertThat(stored.getStatus(), equalTo(Transaction.TransactionStatus.FAILED));
+        assertThat(stored.getComment(), equalTo("comment"));
+        assertThat(stored.getCurrency(), equalTo(Currency.getInstance("EUR")));
+        assertThat(stored.getAmountUnits(), equalTo(transaction.getAmountUnits()));
+        assertThat(stored.getExecutionDateTime(), equalTo(transaction.getExecutionDateTime()));
+        assertThat(history.getByAccountId(transaction.getSourceAccount().getId(), null, null, null, 10).size(), equalTo(1));
+    }
+
+    /**
+     * Negative case - a removed transaction is not stored again by an update
+     */
+    @Test
+    public void testReplaceRemovedFail() {
+        TransactionHistory history = new TransactionHistory();
+        Transaction transaction = transaction(UUID.randomUUID().toString(), UUID.randomUUID().toString(), null);
+        history.put(transaction, null);
+        assertThat(history.remove(transaction.getId(), null), notNullValue());
+        assertThat(history.replace(transaction, null), is(false));
+        assertThat(history.get(transaction.getId()), nullValue());
+        assertThat(history.getByAccountId(transaction.getSourceAccount().getId(), null, null, null, 10).isEmpty(), is(true));
+        assertThat(history.values().iterator().hasNext(), is(false));
+    }
+
+    /**
+     * Positive case - a comment stored again by another transaction is not appended to the text file again
+     */
+    @Test
+    public void testInternedCommentPass() {
+        TransactionHistory history = new TransactionHistory();
+        String account = UUID.randomUUID().toString();
+        Transaction first = transaction(account, UUID.randomUUID().toString(), "Deposit");
+        history.put(first, null);
+        long textSize = history.textSize();
+        Transaction second = transaction(account, UUID.randomUUID().toString(), "Deposit");
+        history.put(second, null);
+        history.put(first, null);
+        assertThat(history.textSize(), equalTo(textSize));
+        assertThat(history.get(second.getId()).getComment(), equalTo("Deposit"));
+    }
+
+    private static Transaction transaction(String source, String destination, String comment) {
+        Transaction transaction = new Transaction(UUID.randomUUID().toString(), LocalDateTime.now());
+        transaction.setSourceAccount(AccountInMemoryDAO.reference(source));
+        transaction.setDestinationAccount(AccountInMemoryDAO.reference(destination));
+        transaction.setCurrency(Currency.getInstance("EUR"));
+        transaction.setAmountUnits(12345);
+        transaction.setComment(comment);
+        transaction.setStatus(Transaction.TransactionStatus.EXECUTED);
+        transaction.setExecutionDateTime(LocalDateTime.now());
+        return transaction;
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.ulanm.moneytransfer.dao.impl;
+
+import com.ulanm.moneytransfer.dao.BundleDAO;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TransactionInMemoryDAOTest {
+
+    private final BundleDAO dao = new InMemoryBundleDAO();
+
+    /**
+     * Positive case - transactions completing while the account is listed are listed exactly once
+     */
+    @Test
+    public void testGetByAccountIdWhileCompletingPass() throws Exception {
+        Account source = createAccount();
+        Account destination = createAccount();
+        List<Transaction> created = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Transaction transaction = dao.getTransactionDAO().create();
+            transaction.setSourceAccount(source);
+            transaction.setDestinationAccount(destination);
+            transaction.setCurrency(Currency.getInstance("USD"));
+            transaction.setAmountUnits(1);
+            dao.getTransactionDAO().submit(transaction);
+            created.add(transaction);
+        }
+        Collections.shuffle(created);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> completing = executor.submit(() -> {
+                for (Transaction transaction : created) {
+                    Transaction executed = transaction.clone();
+                    executed.setStatus(Transaction.TransactionStatus.EXECUTED);
+                    dao.getTransactionDAO().submit(executed);
+                }
+            });
+            do {
+                assertListedOnce(source.getId(), created.size());
+            }
+            while (!completing.isDone());
+            completing.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertListedOnce(source.getId(), created.size());
+    }
+
+    // Lists the account page by page the way the cursor of the service does.
+    private void assertListedOnce(String accountId, int count) {
+        Set<String> ids = new HashSet<>();
+        Transaction last = null;
+        while (true) {
+            List<Transaction> page = dao.getTransactionDAO().getByAccountId(accountId,
+                    last == null ? null : last.getCreationDateTime(), last == null ? null : last.getId(), null, 100);
+            for (Transaction transaction : page)
+                assertThat(ids.add(transaction.getId()), is(true));
+            if (page.size() < 100)
+                break;
+            last = page.get(page.size() - 1);
+        }
+        assertThat(ids, hasSize(count));
+    }
+
+    private Account createAccount() {
+        User owner = dao.getUserDAO().create();
+        owner.setName("listing owner");
+        dao.getUserDAO().submit(owner);
+        Account account = dao.getAccountDAO().create();
+        account.setOwner(owner);
+        account.setName("listing account");
+        account.setCurrency(Currency.getInstance("USD"));
+        account.setActive(true);
+        dao.getAccountDAO().submit(account);
+        return account;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ShardedTransferEngineTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private ShardedTransferEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new ShardedTransferEngine(2);
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    /**
+     * Positive case - transfer between accounts of different shards
+     */
+    @Test
+    public void testTransferPass() throws Exception {
+        Account source = createAccount(1000, true);
+        Account destination = createAccount(0, true, engine.index(source.getId()) + 1);
+        Account[] result = engine.transfer(source.getId(), destination.getId(), USD, 250);
+        assertThat(result[0].getBalanceUnits(), equalTo(750L));
+        assertThat(result[1].getBalanceUnits(), equalTo(250L));
+        assertThat(balance(source), equalTo(750L));
+        assertThat(balance(destination), equalTo(250L));
+    }
+
+    /**
+     * Positive case - concurrent transfers within and across shards keep the total
+     */
+    @Test
+    public void testTransferConcurrentPass() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+            accounts.add(createAccount(10_000, true, i));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            Account source = accounts.get(i % accounts.size());
+            Account destination = accounts.get((i / accounts.size() + i + 1) % accounts.size());
+            futures.add(executor.submit(() -> {
+                try {
+                    engine.transfer(source.getId(), destination.getId(), USD, 7);
+                }
+                catch (ServiceException e) {
+                    assertThat(e.getStatusCode(), equalTo(403));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+        long total = 0;
+        for (Account account : accounts)
+            total += balance(account);
+        assertThat(total, equalTo(60_000L));
+    }
+
+    /**
+     * Positive case - an interrupted request still gets the outcome of the transfer
+     */
+    @Test
+    public void testTransferInterruptedPass() throws Exception {
+        Account source = createAccount(1000, true);
+        Account destination = createAccount(0, true, engine.index(source.getId()) + 1);
+        Thread.currentThread().interrupt();
+        Account[] result = engine.transfer(source.getId(), destination.getId(), USD, 100);
+        assertThat(Thread.interrupted(), is(true));
+        assertThat(result[1].getBalanceUnits(), equalTo(100L));
+        assertThat(balance(source), equalTo(900L));
+        assertThat(balance(destination), equalTo(100L));
+    }
+
+    /**
+     * Negative case - the amount is refunded to the source when the destination on another shard is not active
+     */
+    @Test
+    public void testTransferInactiveDestinationFail() throws Exception {
+        Account source = createAccount(1000, true);
+        Account destination = createAccount(0, false, engine.index(source.getId()) + 1);
+        try {
+            engine.transfer(source.getId(), destination.getId(), USD, 300);
+            fail();
+        }
+        catch (ServiceException e) {
+            assertThat(e.getStatusCode(), equalTo(403));
+            assertThat(e.getStatusMessage(), equalTo("Account is not active."));
+        }
+        assertThat(balance(source), equalTo(1000L));
+        assertThat(balance(destination), equalTo(0L));
+    }
+
+    /**
+     * Negative case - the amount is refunded to the source when the destination on another shard would overflow
+     */
+    @Test
+    public void testTransferOverflowFail() throws Exception {
+        Account source = createAccount(1000, true);
+        Account destination = createAccount(Long.MAX_VALUE - 10, true, engine.index(source.getId()) + 1);
+        try {
+            engine.transfer(source.getId(), destination.getId(), USD, 11);
+            fail();
+        }
+        catch (ServiceException e) {
+            assertThat(e.getStatusCode(), equalTo(403));
+        }
+        assertThat(balance(source), equalTo(1000L));
+        assertThat(balance(destination), equalTo(Long.MAX_VALUE - 10));
+    }
+
+    private Account createAccount(long balance, boolean active) {
+        User owner = Application.dao.getUserDAO().create();
+        owner.setName("sharded engine test");
+        Application.dao.getUserDAO().submit(owner);
+        Account account = Application.dao.getAccountDAO().create();
+        account.setOwner(owner);
+        account.setName("sharded engine test");
+        account.setCurrency(USD);
+        account.setBalanceUnits(balance);
+        account.setActive(active);
+        Application.dao.getAccountDAO().submit(account);
+        return account;
+    }
+
+    // Creates accounts until one falls on the given shard.
+    private Account createAccount(long balance, boolean active, int shard) {
+        while (true) {
+            Account account = createAccount(balance, active);
+            if (engine.index(account.getId()) == shard % 2)
+                return account;
+        }
+    }
+
+    private static long balance(Account account) {
+        return Application.dao.getAccountDAO().getById(account.getId()).getBalanceUnits();
+    }
+
+}
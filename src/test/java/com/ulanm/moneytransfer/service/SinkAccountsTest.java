@@ -0,0 +1,150 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SinkAccountsTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private final LockingTransferEngine engine = new LockingTransferEngine();
+
+    @After
+    public void tearDown() {
+        SinkAccounts.setAccounts(Collections.emptyList());
+    }
+
+    /**
+     * Positive case - concurrent transfers to a sink account are all folded into its balance before they return
+     */
+    @Test
+    public void testTransferConcurrentPass() throws Exception {
+        Account sink = createSink(0);
+        List<Account> sources = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            sources.add(createAccount(1000));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Account[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Account source = sources.get(i % sources.size());
+            futures.add(executor.submit(() -> engine.transfer(source.getId(), sink.getId(), USD, 2)));
+        }
+        for (Future<Account[]> future : futures) {
+            Account[] accounts = future.get();
+            assertThat(accounts[1].getBalanceUnits(), greaterThanOrEqualTo(2L));
+        }
+        executor.shutdown();
+        assertThat(SinkAccounts.pending(sink.getId()), equalTo(0L));
+        assertThat(balance(sink), equalTo(800L));
+        for (Account source : sources)
+            assertThat(balance(source), equalTo(900L));
+    }
+
+    /**
+     * Positive case - a debit from a sink account sees the credits not folded yet
+     */
+    @Test
+    public void testTransferFromSinkPass() throws Exception {
+        Account sink = createSink(0);
+        Account source = createAccount(1000);
+        engine.transfer(source.getId(), sink.getId(), USD, 600);
+        Account[] accounts = engine.transfer(sink.getId(), source.getId(), USD, 600);
+        assertThat(accounts[0].getBalanceUnits(), equalTo(0L));
+        assertThat(balance(source), equalTo(1000L));
+    }
+
+    /**
+     * Negative case - a transfer that would overflow the sink balance is rejected and the source keeps its money
+     */
+    @Test
+    public void testTransferOverflowFail() throws Exception {
+        Account sink = createSink(Long.MAX_VALUE - 10);
+        Account source = createAccount(1000);
+        try {
+            engine.transfer(source.getId(), sink.getId(), USD, 11);
+            fail();
+        }
+        catch (ServiceException e) {
+            assertThat(e.getStatusCode(), equalTo(403));
+            assertThat(e.getStatusMessage(), equalTo("Balance limit exceeded."));
+        }
+        assertThat(balance(source), equalTo(1000L));
+        assertThat(balance(sink), equalTo(Long.MAX_VALUE - 10));
+    }
+
+    /**
+     * Negative case - concurrent credits past the sink limit are rejected at the fold and refunded to their sources
+     */
+    @Test
+    public void testTransferConcurrentOverflowFail() throws Exception {
+        Account sink = createSink(Long.MAX_VALUE - 100);
+        List<Account> sources = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            sources.add(createAccount(1000));
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (Account source : sources)
+            futures.add(executor.submit(() -> {
+                try {
+                    engine.transfer(source.getId(), sink.getId(), USD, 10);
+                    return true;
+                }
+                catch (ServiceException e) {
+                    assertThat(e.getStatusCode(), equalTo(403));
+                    return false;
+                }
+            }));
+        int succeeded = 0;
+        for (Future<Boolean> future : futures)
+            if (future.get())
+                succeeded++;
+        executor.shutdown();
+        assertThat(succeeded, equalTo(10));
+        assertThat(balance(sink), equalTo(Long.MAX_VALUE));
+        long total = 0;
+        for (Account source : sources)
+            total += balance(source);
+        assertThat(total, equalTo(20_000L - 100));
+    }
+
+    private static Account createSink(long balance) {
+        Account sink = createAccount(balance);
+        SinkAccounts.setAccounts(Collections.singletonList(sink.getId()));
+        return sink;
+    }
+
+    private static Account createAccount(long balance) {
+        User owner = Application.dao.getUserDAO().create();
+        owner.setName("sink accounts test");
+        Application.dao.getUserDAO().submit(owner);
+        Account account = Application.dao.getAccountDAO().create();
+        account.setOwner(owner);
+        account.setName("sink accounts test");
+        account.setCurrency(USD);
+        account.setBalanceUnits(balance);
+        account.setActive(true);
+        Application.dao.getAccountDAO().submit(account);
+        return account;
+    }
+
+    private static long balance(Account account) {
+        return Application.dao.getAccountDAO().getById(account.getId()).getBalanceUnits();
+    }
+
+}
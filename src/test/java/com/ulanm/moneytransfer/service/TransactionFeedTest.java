@@ -0,0 +1,126 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.exception.ServiceException;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TransactionFeedTest {
+
+    @After
+    public void tearDown() {
+        TransactionFeed.setListener(null);
+    }
+
+    /**
+     * Positive case - transactions published concurrently reach the listener once each, in the order of the feed
+     */
+    @Test
+    public void testPublishConcurrentPass() throws Exception {
+        List<TransactionFeed.Event> received = Collections.synchronizedList(new ArrayList<>());
+        TransactionFeed.setListener(received::add);
+        Account source = account();
+        Account destination = account();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> publishers = new ArrayList<>();
+        for (int p = 0; p < 8; p++)
+            publishers.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++)
+                    TransactionFeed.publish(transaction(source, destination));
+            }));
+        for (Future<?> publisher : publishers)
+            publisher.get();
+        executor.shutdown();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.size() < 1600 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(received, hasSize(1600));
+        for (int i = 1; i < received.size(); i++)
+            assertThat(received.get(i).getSequence(), equalTo(received.get(i - 1).getSequence() + 1));
+        List<TransactionFeed.Event> after = TransactionFeed.after(received.get(0).getTransaction().getId(), source.getId());
+        assertThat(after, hasSize(1599));
+        assertThat(after.get(0).getSequence(), equalTo(received.get(1).getSequence()));
+        assertThat(TransactionFeed.after(received.get(0).getTransaction().getId(), UUID.randomUUID().toString()), empty());
+    }
+
+    /**
+     * Positive case - a published transaction does not change with the copy it was published from
+     */
+    @Test
+    public void testPublishSnapshotPass() throws Exception {
+        List<TransactionFeed.Event> received = Collections.synchronizedList(new ArrayList<>());
+        TransactionFeed.setListener(received::add);
+        Account source = account();
+        Transaction transaction = transaction(source, account());
+        TransactionFeed.publish(transaction);
+        transaction.setStatus(Transaction.TransactionStatus.FAILED);
+        source.setBalanceUnits(0);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.isEmpty() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        Transaction published = received.get(0).getTransaction();
+        assertThat(published.getStatus(), equalTo(Transaction.TransactionStatus.EXECUTED));
+        assertThat(published.getSourceAccount().getBalanceUnits(), equalTo(100L));
+        try {
+            published.setStatus(Transaction.TransactionStatus.FAILED);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertThat(published.getStatus(), equalTo(Transaction.TransactionStatus.EXECUTED));
+        }
+        try {
+            published.getSourceAccount().setBalanceUnits(0);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertThat(published.getSourceAccount().getBalanceUnits(), equalTo(100L));
+        }
+    }
+
+    /**
+     * Negative case - resumed after a transaction which is not in the feed
+     */
+    @Test
+    public void testAfterFail() {
+        try {
+            TransactionFeed.after(UUID.randomUUID().toString(), null);
+            fail();
+        }
+        catch (ServiceException e) {
+            assertThat(e.getStatusCode(), equalTo(410));
+        }
+    }
+
+    private static Account account() {
+        Account account = new Account();
+        account.setCurrency(Currency.getInstance("USD"));
+        account.setBalanceUnits(100);
+        account.setActive(true);
+        return account;
+    }
+
+    private static Transaction transaction(Account source, Account destination) {
+        Transaction transaction = new Transaction();
+        transaction.setSourceAccount(source);
+        transaction.setDestinationAccount(destination);
+        transaction.setCurrency(Currency.getInstance("USD"));
+        transaction.setAmountUnits(1);
+        transaction.setStatus(Transaction.TransactionStatus.EXECUTED);
+        return transaction;
+    }
+
+}
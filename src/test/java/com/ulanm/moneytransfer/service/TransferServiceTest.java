@@ -0,0 +1,186 @@
+package com.ulanm.moneytransfer.service;
+
+import com.ulanm.moneytransfer.Application;
+import com.ulanm.moneytransfer.dao.AccountDAO;
+import com.ulanm.moneytransfer.dao.BundleDAO;
+import com.ulanm.moneytransfer.dao.TransactionDAO;
+import com.ulanm.moneytransfer.dao.UserDAO;
+import com.ulanm.moneytransfer.model.impl.Account;
+import com.ulanm.moneytransfer.model.impl.Transaction;
+import com.ulanm.moneytransfer.model.impl.TransferResult;
+import com.ulanm.moneytransfer.model.impl.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TransferServiceTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private BundleDAO stored;
+
+    private volatile boolean storeFails;
+
+    @Before
+    public void setUp() {
+        stored = Application.dao;
+        Application.dao = new FailingBundleDAO(stored);
+    }
+
+    @After
+    public void tearDown() {
+        Application.dao = stored;
+    }
+
+    /**
+     * Negative case - accounts of a batch not stored, items rejected on their own keep their status and are failed once
+     */
+    @Test
+    public void testBatchStoreFail() throws Exception {
+        Account source = createAccount(100);
+        Account destination = createAccount(0);
+        List<Transaction> created = Arrays.asList(
+                createTransaction(source, destination, 30),
+                createTransaction(source, destination, 1000),
+                createTransaction(destination, source, 10)
+        );
+        List<Long> versions = new ArrayList<>();
+        for (Transaction transaction : created)
+            versions.add(Application.dao.getTransactionDAO().getById(transaction.getId()).getVersion());
+        storeFails = true;
+        List<TransferResult> results = TransferService.executeBatch(created, false);
+        storeFails = false;
+        assertThat(results, hasSize(3));
+        assertThat(results.get(0).getStatusCode(), equalTo(500));
+        assertThat(results.get(1).getStatusCode(), equalTo(403));
+        assertThat(results.get(1).getStatusMessage(), equalTo("Insufficient funds."));
+        assertThat(results.get(2).getStatusCode(), equalTo(500));
+        for (int i = 0; i < created.size(); i++) {
+            Transaction transaction = Application.dao.getTransactionDAO().getById(created.get(i).getId());
+            assertThat(transaction.getStatus(), equalTo(Transaction.TransactionStatus.FAILED));
+            assertThat(transaction.getVersion(), equalTo(versions.get(i) + 1));
+        }
+        assertThat(Application.dao.getAccountDAO().getById(source.getId()).getBalanceUnits(), equalTo(100L));
+        assertThat(Application.dao.getAccountDAO().getById(destination.getId()).getBalanceUnits(), equalTo(0L));
+    }
+
+    private Account createAccount(long balance) {
+        User owner = Application.dao.getUserDAO().create();
+        owner.setName("transfer service test");
+        Application.dao.getUserDAO().submit(owner);
+        Account account = Application.dao.getAccountDAO().create();
+        account.setOwner(owner);
+        account.setName("transfer service test");
+        account.setCurrency(USD);
+        account.setBalanceUnits(balance);
+        account.setActive(true);
+        Application.dao.getAccountDAO().submit(account);
+        return account;
+    }
+
+    private static Transaction createTransaction(Account source, Account destination, long amount) {
+        Transaction transaction = Application.dao.getTransactionDAO().create();
+        transaction.setSourceAccount(source);
+        transaction.setDestinationAccount(destination);
+        transaction.setCurrency(USD);
+        transaction.setAmountUnits(amount);
+        Application.dao.getTransactionDAO().submit(transaction);
+        return transaction;
+    }
+
+    // Stores accounts through the given DAO unless the test makes the store fail.
+    private final class FailingBundleDAO implements BundleDAO {
+
+        private final BundleDAO dao;
+
+        private final AccountDAO accounts;
+
+        FailingBundleDAO(BundleDAO dao) {
+            this.dao = dao;
+            AccountDAO stored = dao.getAccountDAO();
+            accounts = new AccountDAO() {
+
+                @Override
+                public List<Account> getByOwnerId(String ownerId) {
+                    return stored.getByOwnerId(ownerId);
+                }
+
+                @Override
+                public Account compareAndSubmit(Account entity, long expectedVersion) {
+                    return storeFails ? null : stored.compareAndSubmit(entity, expectedVersion);
+                }
+
+                @Override
+                public List<Account> getAll() {
+                    return stored.getAll();
+                }
+
+                @Override
+                public Account getById(String id) {
+                    return stored.getById(id);
+                }
+
+                @Override
+                public boolean submit(Account entity) {
+                    return !storeFails && stored.submit(entity);
+                }
+
+                @Override
+                public boolean delete(Account entity) {
+                    return stored.delete(entity);
+                }
+
+                @Override
+                public Account create() {
+                    return stored.create();
+                }
+
+            };
+        }
+
+        @Override
+        public UserDAO getUserDAO() {
+            return dao.getUserDAO();
+        }
+
+        @Override
+        public AccountDAO getAccountDAO() {
+            return accounts;
+        }
+
+        @Override
+        public TransactionDAO getTransactionDAO() {
+            return dao.getTransactionDAO();
+        }
+
+        @Override
+        public void generateTestData() {
+            dao.generateTestData();
+        }
+
+        @Override
+        public void sync() {
+            dao.sync();
+        }
+
+        @Override
+        public void settle() {
+            dao.settle();
+        }
+
+        @Override
+        public void close() {
+            dao.close();
+        }
+
+    }
+
+}